@@ -1,41 +1,257 @@
 package controller;
 
 import emulator.*;
+import event.EventBus;
 
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.LongConsumer;
 
 public class EmulatorController {
+    // Snapshots share unchanged memory pages with the emulator, so each costs its registers, display and the
+    // pages written since. A long run can still write every page between steps, hence the limit on snapshots.
+    public static final int DEFAULT_HISTORY_LIMIT = 1000;
 
     Chip8Emulator emulator;
-    Stack<Chip8Emulator> lastEmulators = new Stack<>();
+    // Newest snapshot first.
+    Deque<Chip8Emulator> lastEmulators = new ArrayDeque<>();
+    // Snapshots no longer in the history, reused by the next step instead of allocating a new one.
+    private final Deque<Chip8Emulator> spareEmulators = new ArrayDeque<>();
+    private volatile int historyLimit = DEFAULT_HISTORY_LIMIT;
+    // Size of lastEmulators, kept separately so other threads can read it while the history changes.
+    private volatile int historyDepth;
+    private MemoryHeatMap heatMap;
+
     public EmulatorController(Chip8Emulator emulator) {
         this.emulator = emulator;
     }
 
 
     public void executeCycle() {
-        this.lastEmulators.push(this.emulator.copy());
+        pushSnapshot();
         this.emulator.executeCycle();
+        publishFrame();
+    }
+
+    /**
+     * Saves the current state for undo. Once the history is full, the oldest snapshot is overwritten,
+     * so stepping allocates nothing in the steady state.
+     */
+    private void pushSnapshot() {
+        Chip8Emulator snapshot;
+        if (this.lastEmulators.size() >= this.historyLimit) {
+            snapshot = this.lastEmulators.removeLast();
+        } else if (!this.spareEmulators.isEmpty()) {
+            snapshot = this.spareEmulators.pop();
+        } else {
+            snapshot = new Chip8Emulator();
+        }
+        this.emulator.copyInto(snapshot);
+        this.lastEmulators.push(snapshot);
+        this.historyDepth = this.lastEmulators.size();
+    }
+
+    public int getHistoryLimit() {
+        return this.historyLimit;
+    }
+
+    public void setHistoryLimit(final int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("History limit must be positive: " + limit);
+        }
+        this.historyLimit = limit;
+        while (this.lastEmulators.size() > limit) {
+            this.lastEmulators.removeLast();
+        }
+        this.historyDepth = this.lastEmulators.size();
+    }
+
+    /**
+     * @return number of steps that can currently be undone. Can be read from any thread.
+     */
+    public int getHistoryDepth() {
+        return this.historyDepth;
+    }
+
+    /**
+     * @return approximate heap held by the undo history, including the snapshots kept for reuse. Walks the
+     * history, so only call it on the thread that steps and undoes.
+     */
+    public long estimateHistoryBytes() {
+        long bytes = 0;
+        for (Chip8Emulator snapshot : this.lastEmulators) {
+            bytes += snapshot.estimateHeapBytes();
+        }
+        for (Chip8Emulator snapshot : this.spareEmulators) {
+            bytes += snapshot.estimateHeapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops all but the newest {@code keep} snapshots and the snapshots kept for reuse, so their memory
+     * can be collected. Unlike {@link #setHistoryLimit(int)} the history may grow again afterwards.
+     */
+    public void trimHistory(final int keep) {
+        if (keep < 0) {
+            throw new IllegalArgumentException("Cannot keep a negative number of snapshots: " + keep);
+        }
+        while (this.lastEmulators.size() > keep) {
+            this.lastEmulators.removeLast();
+        }
+        this.historyDepth = this.lastEmulators.size();
+        this.spareEmulators.clear();
     }
 
     public void executeCycles(final int n) {
         for(int i = 0; i<n; i++) {
-            this.executeCycle();
+            pushSnapshot();
+            this.emulator.executeCycle();
+        }
+        publishFrame();
+    }
+
+    /**
+     * Runs until a breakpoint of the debugger is hit, at most {@code maxCycles} instructions.
+     * The whole run is undone in one step.
+     */
+    public long runToBreakpoint(final long maxCycles) {
+        pushSnapshot();
+        long cycles = this.emulator.runUntilBreakpoint(maxCycles);
+        publishFrame();
+        return cycles;
+    }
+
+    /**
+     * Saves an undo point for a job about to be handed to {@link #runJob}, so the whole job is undone in one step.
+     * Call on the thread that owns the controller, since the history is not touched by the job itself.
+     */
+    public void prepareJob() {
+        pushSnapshot();
+    }
+
+    /**
+     * Runs a long job on the calling thread, meant to be a background thread, after {@link #prepareJob()}.
+     * <p>
+     * The event bus is detached while the job runs, so the view is not repainted for every change but once
+     * at the end. Other threads must not step, undo or change the emulator until the job returns; the undo
+     * history stays with the owning thread.
+     *
+     * @param progress called with the number of executed instructions after every batch, may be null.
+     */
+    public StopReason runJob(SteppingJob job, LongConsumer progress) {
+        Chip8Emulator running = this.emulator;
+        EventBus bus = running.getEventBus();
+        running.setEventBus(null);
+        Debugger debugger = running.getDebugger();
+        // Addresses wrap around at the end of memory, like the debugger's.
+        int target = job.getTargetPc() < 0 ? -1 : job.getTargetPc() & (running.getMemorySize() - 1);
+        boolean temporaryBreakpoint = job.getKind() == SteppingJob.Kind.UNTIL_PC && !debugger.hasBreakpoint(target);
+        if (temporaryBreakpoint) {
+            debugger.addBreakpoint(target);
+        }
+        StopReason reason = StopReason.BUDGET_EXHAUSTED;
+        try {
+            long start = running.getCycles();
+            long executed = 0;
+            while (!job.isCancelled() && executed < job.getMaxCycles()) {
+                // A breakpoint does not stop the first instruction of a run, so check the batch boundary here.
+                if (target >= 0 && executed > 0 && running.getProgramCounter() == target) {
+                    reason = StopReason.BREAKPOINT;
+                    break;
+                }
+                reason = running.run(Math.min(SteppingJob.BATCH_CYCLES, job.getMaxCycles() - executed),
+                        job.getKind() == SteppingJob.Kind.UNTIL_DISPLAY_CHANGE);
+                executed = running.getCycles() - start;
+                job.setExecuted(executed);
+                if (progress != null) {
+                    progress.accept(executed);
+                }
+                if (reason != StopReason.BUDGET_EXHAUSTED) {
+                    break;
+                }
+            }
+        } finally {
+            if (temporaryBreakpoint) {
+                debugger.removeBreakpoint(target);
+            }
+            running.setEventBus(bus);
         }
+        job.finish(reason);
+        publishFrame();
+        return reason;
+    }
+
+    // Stepping by hand has no frame loop, so every step or batch counts as a finished frame.
+    private void publishFrame() {
+        EventBus bus = this.emulator.getEventBus();
+        if (bus != null) {
+            bus.publishFrameReady(this.emulator);
+        }
+    }
+
+    /**
+     * @return the emulator currently shown, it is replaced by a snapshot on undo.
+     */
+    public Chip8Emulator getEmulator() {
+        return this.emulator;
+    }
+
+    public Debugger getDebugger() {
+        return this.emulator.getDebugger();
     }
 
     public short[] getDisplay() {
         return this.emulator.getDisplay();
     }
 
+    public void packDisplay(long[] rows) {
+        this.emulator.packDisplay(rows);
+    }
+
     public void undo() {
         if(!this.lastEmulators.isEmpty()) {
+            this.spareEmulators.push(this.emulator);
             this.emulator = this.lastEmulators.pop();
-            this.emulator.notifyObservers();
+            this.historyDepth = this.lastEmulators.size();
+            // Snapshots taken before profiling started carry no heat map.
+            this.emulator.setMemoryHeatMap(this.heatMap);
+            EventBus bus = this.emulator.getEventBus();
+            if (bus != null) {
+                bus.publishStateRestored(this.emulator);
+            }
         }
     }
 
+    /**
+     * Starts counting memory accesses, the counts survive undo.
+     *
+     * @return the heat map, the same one on every call.
+     */
+    public MemoryHeatMap enableHeatMap() {
+        if (this.heatMap == null) {
+            this.heatMap = this.emulator.getMemoryHeatMap();
+            if (this.heatMap == null) {
+                this.heatMap = new MemoryHeatMap(this.emulator.getMemorySize());
+                this.emulator.setMemoryHeatMap(this.heatMap);
+            }
+        }
+        return this.heatMap;
+    }
+
+    public Keypad getKeypad() {
+        return this.emulator.getKeypad();
+    }
+
     public String getNextInstruction() {
         return this.emulator.getPCInstr();
     }
+
+    /**
+     * @return the instruction at the PC as one 16-bit value, the allocation-free variant of
+     * {@link #getNextInstruction()}.
+     */
+    public int getNextOpcode() {
+        return this.emulator.getPCInstruction();
+    }
 }
@@ -0,0 +1,188 @@
+package controller;
+
+import emulator.Chip8Emulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Reloads a ROM into a running emulator whenever the file changes, without restarting anything.
+ * <p>
+ * The directory of the ROM is watched with a {@link WatchService}. When the file was written, its new
+ * bytes are compared with the previous version and only the differing bytes are patched into memory with
+ * {@link Chip8Emulator#patchRom(byte[], byte[])}. Patching runs on the given executor, which must be the
+ * thread driving the emulator (e.g. the event dispatch thread or a {@link host.SpeedGovernor}).
+ */
+public class RomWatcher implements Closeable {
+
+    public enum Mode {
+        /** Keep running from the current state with the new code. */
+        RESUME,
+        /** Keep the state, but restart the program at 0x200. */
+        RESET,
+        /** Go back to the state saved with {@link #saveState()} (initially the state at start), then patch. */
+        RESTORE
+    }
+
+    private final Path rom;
+    private final Executor executor;
+    private final Supplier<Chip8Emulator> target;
+    private final Mode mode;
+    private final int maxRomSize;
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    // Only used on the watcher thread.
+    private byte[] loaded;
+    // Only used on the executor: the image in memory, and the state and image saved for RESTORE.
+    private byte[] applied;
+    private final Chip8Emulator saved = new Chip8Emulator();
+    private byte[] savedImage;
+
+    private volatile long reloads;
+    private volatile int lastPatchedBytes;
+    private volatile long failedReloads;
+
+    /**
+     * @param loaded the ROM image currently in memory.
+     * @param target the emulator to patch, asked again for every reload since the controller replaces its
+     *               emulator on undo.
+     */
+    public RomWatcher(Path rom, byte[] loaded, Executor executor, Supplier<Chip8Emulator> target, Mode mode)
+            throws IOException {
+        this.rom = rom.toAbsolutePath();
+        this.loaded = loaded.clone();
+        this.applied = this.loaded;
+        this.executor = executor;
+        this.target = target;
+        this.mode = mode;
+        // Undo only swaps in copies of the same emulator, so the size never changes.
+        this.maxRomSize = target.get().getMaxRomSize();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        // Editors often save by writing a new file and renaming it over the old one.
+        this.rom.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        saveState();
+        this.watcher = new Thread(this::watch, "rom-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * Remembers the current state for {@link Mode#RESTORE}.
+     */
+    public void saveState() {
+        executor.execute(() -> {
+            target.get().copyInto(saved);
+            savedImage = applied;
+        });
+    }
+
+    public long getReloads() {
+        return reloads;
+    }
+
+    /**
+     * @return bytes that differed in the last reload.
+     */
+    public int getLastPatchedBytes() {
+        return lastPatchedBytes;
+    }
+
+    /**
+     * @return saved versions that were not loaded, because they did not fit into memory or patching failed.
+     */
+    public long getFailedReloads() {
+        return failedReloads;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (context instanceof Path && rom.getFileName().equals(context)) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed.
+        }
+    }
+
+    private void reload() {
+        byte[] current;
+        try {
+            current = Files.readAllBytes(rom);
+        } catch (IOException e) {
+            // Mid-save or deleted, the next event brings the final version.
+            return;
+        }
+        if (current.length == 0 || Arrays.equals(current, loaded)) {
+            return;
+        }
+        loaded = current;
+        if (current.length > maxRomSize) {
+            // Keep running the last version that fitted, the next save may fix it.
+            failedReloads++;
+            System.err.println("Not reloading " + rom + ": " + current.length + " bytes do not fit into "
+                    + maxRomSize);
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                apply(current);
+            } catch (RuntimeException e) {
+                failedReloads++;
+                System.err.println("Reloading " + rom + " failed: " + e);
+            }
+        });
+    }
+
+    private void apply(byte[] current) {
+        byte[] previous = applied;
+        Chip8Emulator emulator = target.get();
+        switch (mode) {
+            case RESTORE:
+                // The saved state still holds the image it was saved with, patch from that one.
+                saved.copyInto(emulator);
+                lastPatchedBytes = emulator.patchRom(savedImage, current);
+                break;
+            case RESET:
+                lastPatchedBytes = emulator.patchRom(previous, current);
+                emulator.resetProgramCounter();
+                break;
+            default:
+                lastPatchedBytes = emulator.patchRom(previous, current);
+                break;
+        }
+        applied = current;
+        reloads++;
+        if (emulator.getEventBus() != null) {
+            emulator.getEventBus().publishStateRestored(emulator);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package controller;
+
+import emulator.StopReason;
+
+/**
+ * A long run of the emulator that a background thread executes via {@link EmulatorController#runJob}.
+ * <p>
+ * The job runs in batches of {@link #BATCH_CYCLES} instructions and checks for cancellation between them, so a
+ * cancelled job stops after at most one more batch. Progress and the outcome can be read from any thread.
+ */
+public class SteppingJob {
+    public static final int BATCH_CYCLES = 10_000;
+
+    public enum Kind {
+        /** Runs the given number of instructions. */
+        CYCLES,
+        /** Runs until the PC reaches the target address, or a breakpoint of the debugger is hit. */
+        UNTIL_PC,
+        /** Runs until an instruction changes the display. */
+        UNTIL_DISPLAY_CHANGE
+    }
+
+    private final Kind kind;
+    private final long maxCycles;
+    private final int targetPc;
+
+    private volatile boolean cancelled;
+    private volatile long executed;
+    private volatile StopReason stopReason;
+
+    private SteppingJob(Kind kind, final long maxCycles, final int targetPc) {
+        if (maxCycles <= 0) {
+            throw new IllegalArgumentException("A job has to run at least one cycle: " + maxCycles);
+        }
+        this.kind = kind;
+        this.maxCycles = maxCycles;
+        this.targetPc = targetPc;
+    }
+
+    public static SteppingJob cycles(final long cycles) {
+        return new SteppingJob(Kind.CYCLES, cycles, -1);
+    }
+
+    /**
+     * @param address   a 16-bit address, so XO-CHIP's 64 KB can be reached.
+     * @param maxCycles upper bound in case the address is never reached.
+     */
+    public static SteppingJob untilPc(final int address, final long maxCycles) {
+        if (address < 0 || address > 0xFFFF) {
+            throw new IllegalArgumentException("Not an address: " + Integer.toHexString(address));
+        }
+        return new SteppingJob(Kind.UNTIL_PC, maxCycles, address);
+    }
+
+    public static SteppingJob untilDisplayChange(final long maxCycles) {
+        return new SteppingJob(Kind.UNTIL_DISPLAY_CHANGE, maxCycles, -1);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getMaxCycles() {
+        return maxCycles;
+    }
+
+    int getTargetPc() {
+        return targetPc;
+    }
+
+    /**
+     * Asks the job to stop after the current batch. Can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return instructions executed so far, updated after every batch.
+     */
+    public long getExecuted() {
+        return executed;
+    }
+
+    void setExecuted(final long executed) {
+        this.executed = executed;
+    }
+
+    /**
+     * @return why the job ended, {@link StopReason#BREAKPOINT} when the target PC was reached, and
+     * {@link StopReason#BUDGET_EXHAUSTED} after all cycles or a cancel. Null while the job runs.
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    void finish(StopReason reason) {
+        this.stopReason = reason;
+    }
+}
@@ -1,18 +1,16 @@
 package emulator;
 
-import util.Observable;
-import util.Observer;
+import event.EventBus;
+import util.Hashing;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * <a href="http://devernay.free.fr/hacks/chip8/C8TECH10.HTM#memmap">Link to Documentation</a>
  */
-public class Chip8Emulator implements Emulator, Observable {
-    // Observer
-    private List<Observer> observers = new ArrayList<>();
+public class Chip8Emulator implements Emulator {
+    // Receives display, sound and halt events, null if nobody listens. Shared with every copy, like the keypad.
+    private EventBus eventBus;
 
     // The Chip-8 language is capable of accessing up to 4KB (4,096 bytes) of RAM, from location 0x000 (0)
     // to 0xFFF (4095). The first 512 bytes, from 0x000 to 0x1FF,
@@ -21,13 +19,16 @@ public class Chip8Emulator implements Emulator, Observable {
     // Most Chip-8 programs start at location 0x200 (512), but some begin at 0x600 (1536).
     // Programs beginning at 0x600 are intended for the ETI 660 computer.
     private static final short FOUR_KB = 0x1000;
+    // XO-CHIP programs address 64 KB through the 16-bit I register.
+    private static final int SIXTY_FOUR_KB = 0x10000;
     private static final short START_LOCATION = 0x200;
     private static final short START_LOCATION_ETI = 0x600;
-    private static final short KEYBOARD_SIZE = 0x10;
 
-    private static final short DISPLAY_WIDTH = 64;
-    private static final short DISPLAY_HEIGHT = 32;
+    public static final short DISPLAY_WIDTH = 64;
+    public static final short DISPLAY_HEIGHT = 32;
     private static final short DISPLAY_SIZE = DISPLAY_WIDTH * DISPLAY_HEIGHT;
+    // XO-CHIP has two bitplanes, classic programs only draw to the first.
+    public static final int PLANES = 2;
     private static final short START_FONT_SET_LOCATION = 0x000;
     private static final byte NUMBER_REGISTERS = 16;
 
@@ -49,10 +50,25 @@ public class Chip8Emulator implements Emulator, Observable {
     // for up to 16 levels of nested subroutines.
     private int[] stack;
 
-    private int[] memory;
-    private byte[] keyboard;
+    // 4 KB (64 KB for XO-CHIP) in copy-on-write pages, copies of this emulator share the pages they have not written to.
+    private PagedMemory memory;
+    // Addresses formed from I wrap around at the end of memory.
+    private int addressMask;
+    // XO-CHIP mode: 64 KB memory, F000 nnnn, two bitplanes, scrolling, 5xy2/5xy3 and the audio pattern.
+    private boolean xoChip;
 
-    private short[] display;
+    // The keypad is the physical input device, so it is shared with every copy of this emulator.
+    private Keypad keypad;
+    // Set while Fx0A finds no key down. The PC stays on the Fx0A instruction until a key is pressed.
+    private boolean waitingForKey;
+
+    // PLANES bitplanes of DISPLAY_HEIGHT packed rows each, bit 63 is the leftmost pixel of a row. Drawing,
+    // clearing and scrolling work on whole rows.
+    private long[] planes;
+    // Bit mask of the planes Dxyn, 00E0 and scrolling act on, selected by XO-CHIP's Fn01. Bit 0 is the first plane.
+    private int selectedPlanes = 1;
+    // Incremented whenever the display content may have changed, lets consumers skip unchanged frames cheaply.
+    private int displayVersion;
 
     private static final short[] font_set = {
             0xF0, 0x90, 0x90, 0x90, 0xF0, // 0
@@ -73,10 +89,43 @@ public class Chip8Emulator implements Emulator, Observable {
             0xF0, 0x80, 0xF0, 0x80, 0x80  // F
     };
 
+    // Number of executed instructions.
+    private long cycles;
+    // Number of frames run by runFrame(), the 60 Hz clock of the program.
+    private long frames;
+    // Optional instruction trace, null when tracing is off.
+    private TraceRecorder tracer;
+    // Optional per-address access counts, null when profiling is off. Shared with every copy.
+    private MemoryHeatMap heatMap;
+
+    // While the debugger has nothing armed the emulator runs its plain loop. Null in a fork until first used.
+    private Debugger debugger;
+    // False if the debugger belongs to the emulator this one was copied from.
+    private boolean ownsDebugger;
+
     // Timers & Sounds
     private int delayTimer;
     private int soundTimer;
 
+    // Roughly 700 instructions per second at 60 frames per second.
+    public static final int DEFAULT_INSTRUCTIONS_PER_FRAME = 12;
+    private int instructionsPerFrame = DEFAULT_INSTRUCTIONS_PER_FRAME;
+    // Optional cost per instruction; frames are then filled by cost instead of by instructionsPerFrame.
+    private TimingModel timing;
+    // Cost the last frame ran over its budget, taken from the next frame.
+    private long costDebt;
+    // Cost of the instructions executed by the last run.
+    private long lastRunCost;
+    // Set by step() instead of throwing, so run() can report it as a stop reason.
+    private boolean illegalInstruction;
+    // XO-CHIP audio: 128 one-bit samples, first sample in the highest bit of audioPattern[0], played in a loop
+    // while the sound timer runs, at a rate given by the pitch.
+    public static final int DEFAULT_PITCH = 64;
+    private final long[] audioPattern = new long[2];
+    private int pitch = DEFAULT_PITCH;
+    // SplitMix64 state for Cxkk. Part of the machine state, so runs with the same seed are reproducible.
+    private long randomState;
+
 
     // Instructions. 16 bit instructions.
     private static final short JP_ADDR = 0x1;
@@ -99,51 +148,503 @@ public class Chip8Emulator implements Emulator, Observable {
     private static final short ALL_F_INSTRUCTIONS = 0xF;
 
     public Chip8Emulator() {
+        this(new PagedMemory(FOUR_KB), new Keypad(), new Debugger(FOUR_KB));
+        this.ownsDebugger = true;
+        loadFontsIntoMemory();
+    }
+
+    /**
+     * Creates an emulator in XO-CHIP mode, with 64 KB memory and the XO-CHIP instructions.
+     */
+    public static Chip8Emulator xoChip() {
+        Chip8Emulator emulator = new Chip8Emulator(new PagedMemory(SIXTY_FOUR_KB), new Keypad(),
+                new Debugger(SIXTY_FOUR_KB));
+        emulator.ownsDebugger = true;
+        emulator.xoChip = true;
+        emulator.loadFontsIntoMemory();
+        return emulator;
+    }
+
+    // Copies pass the memory, keypad and debugger they share with their source instead of allocating their own.
+    private Chip8Emulator(PagedMemory memory, Keypad keypad, Debugger debugger) {
         this.stack = new int[0x10];
-        this.memory = new int[FOUR_KB];
-        this.display = new short[DISPLAY_SIZE];
-        this.keyboard = new byte[KEYBOARD_SIZE];
+        this.memory = memory;
+        this.addressMask = memory.size() - 1;
+        this.planes = new long[PLANES * DISPLAY_HEIGHT];
+        this.keypad = keypad;
+        this.debugger = debugger;
         this.register = new short[NUMBER_REGISTERS];
-        fillKeyboard();
-        loadFontsIntoMemory();
 
 
         this.PC = START_LOCATION;
     }
 
+    public boolean isXoChip() {
+        return xoChip;
+    }
+
+    /**
+     * @return memory size in bytes, 4 KB or 64 KB in XO-CHIP mode.
+     */
+    public int getMemorySize() {
+        return memory.size();
+    }
+
+    /**
+     * @return the largest program image that fits into memory at 0x200.
+     */
+    public int getMaxRomSize() {
+        return memory.size() - START_LOCATION;
+    }
+
+    /**
+     * @return a new array with one short per pixel, row by row: bit 0 is set if the pixel is set in the first
+     * plane, bit 1 if it is set in the second. Classic programs therefore give 0 and 1.
+     */
     public short[] getDisplay() {
+        short[] display = new short[DISPLAY_SIZE];
+        for (int y = 0; y < DISPLAY_HEIGHT; y++) {
+            long first = planes[y];
+            long second = planes[DISPLAY_HEIGHT + y];
+            for (int x = 0; x < DISPLAY_WIDTH; x++) {
+                display[y * DISPLAY_WIDTH + x] = (short) ((first << x) >>> 63 | (second << x) >>> 63 << 1);
+            }
+        }
         return display;
     }
 
+    public int getDisplayVersion() {
+        return displayVersion;
+    }
+
+    /**
+     * Packs the display into one long per row. Bit 63 is the leftmost pixel of a row.
+     *
+     * @param rows destination, at least {@link #DISPLAY_HEIGHT} entries long.
+     */
+    public void packDisplay(long[] rows) {
+        packDisplay(rows, 0);
+    }
+
+    /**
+     * Packs the display into {@code rows[start]} to {@code rows[start + DISPLAY_HEIGHT - 1]}, so many displays
+     * can share one array. A pixel is set if it is set in any plane.
+     */
+    public void packDisplay(long[] rows, final int start) {
+        for (int y = 0; y < DISPLAY_HEIGHT; y++) {
+            rows[start + y] = planes[y] | planes[DISPLAY_HEIGHT + y];
+        }
+    }
+
+    /**
+     * Copies one bitplane, packed like {@link #packDisplay(long[], int)}.
+     *
+     * @param plane 0 for the first plane, 1 for the second.
+     */
+    public void packPlane(final int plane, long[] rows, final int start) {
+        System.arraycopy(planes, plane * DISPLAY_HEIGHT, rows, start, DISPLAY_HEIGHT);
+    }
+
+    /**
+     * 64-bit hash of the planes. Equal displays give equal hashes, for classic programs the hash only depends on
+     * the first plane.
+     */
+    public long displayHash() {
+        long hash = 0;
+        for (int y = 0; y < DISPLAY_HEIGHT; y++) {
+            hash = Hashing.mix(hash, planes[y]);
+        }
+        if (xoChip) {
+            for (int y = DISPLAY_HEIGHT; y < planes.length; y++) {
+                hash = Hashing.mix(hash, planes[y]);
+            }
+        }
+        return Hashing.finish(hash ^ DISPLAY_HEIGHT);
+    }
+
+    @Override
+    public long stateHash() {
+        return stateHash(0);
+    }
+
+    /**
+     * Hash over registers, I, PC, stack, timers, random state, memory and display. Different seeds give independent hashes.
+     */
+    public long stateHash(final long seed) {
+        long hash = seed;
+        for (short value : register) {
+            hash = Hashing.mix(hash, value);
+        }
+        hash = Hashing.mix(hash, I);
+        hash = Hashing.mix(hash, PC);
+        hash = Hashing.mix(hash, SP);
+        for (int value : stack) {
+            hash = Hashing.mix(hash, value);
+        }
+        hash = Hashing.mix(hash, (long) delayTimer << 32 | soundTimer);
+        hash = Hashing.mix(hash, waitingForKey ? 1 : 0);
+        hash = Hashing.mix(hash, randomState);
+        hash = Hashing.mix(hash, costDebt);
+        if (xoChip) {
+            hash = Hashing.mix(hash, selectedPlanes);
+            hash = Hashing.mix(hash, audioPattern[0]);
+            hash = Hashing.mix(hash, audioPattern[1]);
+            hash = Hashing.mix(hash, pitch);
+        }
+        hash = memory.hash(hash);
+        hash = Hashing.mix(hash, displayHash());
+        return Hashing.finish(hash);
+    }
+
+    public int getProgramCounter() {
+        return PC;
+    }
+
+    /**
+     * Copies a program image into memory at 0x200, the interpreter area with the font set stays untouched.
+     */
+    public void loadRom(byte[] rom) {
+        if (rom.length > getMaxRomSize()) {
+            throw new IllegalArgumentException("ROM too large: " + rom.length + " bytes");
+        }
+        for (int i = 0; i < rom.length; i++) {
+            memory.write(START_LOCATION + i, rom[i]);
+        }
+    }
+
+    /**
+     * Replaces the program image at 0x200 in place by writing only the bytes where {@code previous} and
+     * {@code current} differ; a byte missing from the shorter image counts as 0. Memory the program changed
+     * at other addresses is kept, so a running program can continue with the new code.
+     *
+     * @return the number of bytes written.
+     */
+    public int patchRom(byte[] previous, byte[] current) {
+        if (current.length > getMaxRomSize()) {
+            throw new IllegalArgumentException("ROM too large: " + current.length + " bytes");
+        }
+        int length = Math.max(previous.length, current.length);
+        int written = 0;
+        for (int i = 0; i < length && START_LOCATION + i < memory.size(); i++) {
+            int old = i < previous.length ? previous[i] & 0xFF : 0;
+            int now = i < current.length ? current[i] & 0xFF : 0;
+            if (old != now) {
+                memory.write(START_LOCATION + i, now);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Restarts the program at 0x200 with an empty stack. Registers, timers, memory and display are kept.
+     */
+    public void resetProgramCounter() {
+        PC = START_LOCATION;
+        SP = 0;
+        waitingForKey = false;
+    }
+
     private void loadFontsIntoMemory() {
         for (int i = START_FONT_SET_LOCATION; i < font_set.length; i++) {
-            memory[i] = font_set[i];
+            memory.write(i, font_set[i]);
         }
     }
 
-    private void fillKeyboard() {
-        this.keyboard[0] = 0;
-        this.keyboard[1] = 0;
-        this.keyboard[2] = 0;
-        this.keyboard[3] = 0;
-        this.keyboard[4] = 0;
-        this.keyboard[5] = 0;
-        this.keyboard[6] = 0;
-        this.keyboard[7] = 0;
-        this.keyboard[8] = 0;
-        this.keyboard[9] = 0;
-        this.keyboard[10] = 0;
-        this.keyboard[11] = 0;
-        this.keyboard[12] = 0;
-        this.keyboard[13] = 0;
-        this.keyboard[14] = 0;
-        this.keyboard[15] = 0;
+    /**
+     * The debugger is shared with every copy of this emulator, like the keypad. A fork creates its own on the
+     * first call.
+     */
+    public Debugger getDebugger() {
+        if (debugger == null) {
+            debugger = new Debugger(memory.size());
+            ownsDebugger = true;
+        }
+        return debugger;
+    }
+
+    private boolean isDebugging() {
+        return debugger != null && debugger.isArmed();
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return frames run by {@link #runFrame()}, single steps do not advance it.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Records every following instruction into the given trace, null turns tracing off.
+     */
+    public void setTraceRecorder(TraceRecorder tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Counts every following memory access into the given heat map, null turns counting off.
+     */
+    public void setMemoryHeatMap(MemoryHeatMap heatMap) {
+        this.heatMap = heatMap;
+    }
+
+    public MemoryHeatMap getMemoryHeatMap() {
+        return heatMap;
+    }
+
+    public Keypad getKeypad() {
+        return keypad;
+    }
+
+    /**
+     * @return true if the last executed instruction was Fx0A and no key was down.
+     */
+    public boolean isWaitingForKey() {
+        return waitingForKey;
+    }
+
+    /**
+     * Publishes display changes, sound on/off, halts and finished frames to the given bus, null turns it off.
+     */
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    public EventBus getEventBus() {
+        return eventBus;
     }
 
     @Override
     public void executeCycle() {
-        int instruction = memory[PC];
-        int instruction2 = memory[PC + 1];
+        if (tracer == null) {
+            step();
+        } else {
+            tracedStep();
+        }
+        if (illegalInstruction) {
+            illegalInstruction = false;
+            if (eventBus != null) {
+                eventBus.publishHalted(this, StopReason.ILLEGAL_OPCODE);
+            }
+            throw new UnsupportedOperationException(
+                    Disassembler.hex(new StringBuilder("No supported instruction: "), getPCInstruction(), 4).toString());
+        }
+        cycles++;
+    }
+
+    /**
+     * Executes one frame: {@link #getInstructionsPerFrame()} instructions, or with a {@link TimingModel} as many
+     * instructions as fit into its cycles per frame, then the delay and sound timers count down once. An
+     * instruction that does not fit completely still runs and its excess is taken from the next frame.
+     * The timers also count down when the frame ends early because the program waits for a key,
+     * since the frame's time passes anyway. Publishes {@link event.EventType#FRAME_READY} at the end.
+     */
+    @Override
+    public StopReason runFrame() {
+        StopReason reason;
+        if (timing == null) {
+            reason = run(instructionsPerFrame);
+        } else {
+            long available = timing.getCyclesPerFrame() - costDebt;
+            reason = run(Long.MAX_VALUE, false, available);
+            costDebt = reason == StopReason.BUDGET_EXHAUSTED ? Math.max(0, lastRunCost - available) : 0;
+        }
+        if (reason == StopReason.BUDGET_EXHAUSTED || reason == StopReason.WAITING_FOR_KEY) {
+            decrementTimers();
+        }
+        frames++;
+        if (eventBus != null) {
+            eventBus.publishFrameReady(this);
+        }
+        return reason;
+    }
+
+    @Override
+    public StopReason run(final long budget) {
+        return run(budget, false);
+    }
+
+    /**
+     * Executes at most {@code budget} instructions.
+     * <p>
+     * Stops early when the program waits for a key (after the Fx0A that found no key), before an illegal
+     * instruction (the PC stays on it), when a breakpoint of the debugger is hit, or, if requested, after the
+     * first instruction that changed the display. A breakpoint on the PC the run starts at does not stop the
+     * first instruction, so calling run again continues from a breakpoint.
+     */
+    public StopReason run(final long budget, final boolean stopOnDisplayChange) {
+        return run(budget, stopOnDisplayChange, Long.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #run(long, boolean)}, but also stops once the instructions executed so far cost at least
+     * {@code costBudget} according to the timing model. Leaves the total cost in {@link #lastRunCost}.
+     */
+    private StopReason run(final long budget, final boolean stopOnDisplayChange, final long costBudget) {
+        final boolean debugging = isDebugging();
+        if (debugging) {
+            debugger.clearHit();
+        }
+        lastRunCost = 0;
+        for (long i = 0; i < budget && lastRunCost < costBudget; i++) {
+            if (debugging && i > 0 && debugger.checkBefore(PC, getPCInstruction(), I, xoChip, selectedPlanes)) {
+                return halt(StopReason.BREAKPOINT);
+            }
+            if (timing != null) {
+                lastRunCost += timing.cost(getPCInstruction());
+            }
+            int version = displayVersion;
+            if (tracer == null) {
+                step();
+            } else {
+                tracedStep();
+            }
+            if (illegalInstruction) {
+                illegalInstruction = false;
+                return halt(StopReason.ILLEGAL_OPCODE);
+            }
+            cycles++;
+            if (waitingForKey) {
+                return StopReason.WAITING_FOR_KEY;
+            }
+            if (debugging && debugger.checkAfter(register)) {
+                return halt(StopReason.BREAKPOINT);
+            }
+            if (stopOnDisplayChange && version != displayVersion) {
+                return StopReason.DISPLAY_CHANGED;
+            }
+        }
+        return StopReason.BUDGET_EXHAUSTED;
+    }
+
+    private StopReason halt(StopReason reason) {
+        if (eventBus != null) {
+            eventBus.publishHalted(this, reason);
+        }
+        return reason;
+    }
+
+    private void decrementTimers() {
+        if (delayTimer > 0) {
+            delayTimer--;
+        }
+        if (soundTimer > 0) {
+            soundTimer--;
+            if (soundTimer == 0 && eventBus != null) {
+                eventBus.publishSound(this, false);
+            }
+        }
+    }
+
+    public int getInstructionsPerFrame() {
+        return instructionsPerFrame;
+    }
+
+    public void setInstructionsPerFrame(final int instructionsPerFrame) {
+        if (instructionsPerFrame <= 0) {
+            throw new IllegalArgumentException("Instructions per frame must be positive: " + instructionsPerFrame);
+        }
+        this.instructionsPerFrame = instructionsPerFrame;
+    }
+
+    /**
+     * Fills frames by instruction cost instead of instruction count, null goes back to
+     * {@link #getInstructionsPerFrame()}.
+     */
+    public void setTimingModel(TimingModel timing) {
+        this.timing = timing;
+        this.costDebt = 0;
+    }
+
+    public TimingModel getTimingModel() {
+        return timing;
+    }
+
+    public int getDelayTimer() {
+        return delayTimer;
+    }
+
+    public int getSoundTimer() {
+        return soundTimer;
+    }
+
+    /**
+     * Copies XO-CHIP's 128-sample audio pattern, loaded by F002, into {@code target[0]} and {@code target[1]}.
+     * The first sample is the highest bit of {@code target[0]}; a set bit means the speaker is on.
+     */
+    public void getAudioPattern(long[] target) {
+        System.arraycopy(audioPattern, 0, target, 0, audioPattern.length);
+    }
+
+    public int getPitch() {
+        return pitch;
+    }
+
+    /**
+     * @return the rate the audio pattern is played at, 4000 samples per second at the default pitch 64
+     * and an octave higher for every 48 steps of pitch.
+     */
+    public double getAudioSampleRate() {
+        return 4000 * Math.pow(2, (pitch - DEFAULT_PITCH) / 48.0);
+    }
+
+    /**
+     * Restarts the random number generator used by Cxkk. Emulators with the same state and seed draw the same
+     * numbers.
+     */
+    public void setRandomSeed(final long seed) {
+        this.randomState = seed;
+    }
+
+    private int nextRandom() {
+        randomState += 0x9E3779B97F4A7C15L;
+        return (int) (Hashing.finish(randomState) >>> 56);
+    }
+
+    private void illegalInstruction() {
+        illegalInstruction = true;
+    }
+
+    private void tracedStep() {
+        int pc = PC;
+        int opcode = memory.read(PC) << 8 | memory.read(PC + 1);
+        step();
+        int changed = changedRegister(opcode);
+        int value = changed == TraceRecorder.NO_REGISTER ? 0 : this.register[changed];
+        tracer.record(cycles, pc, opcode, I, changed, value);
+    }
+
+    /**
+     * @return the V register an instruction writes besides VF, for Fx65 the last one loaded.
+     */
+    private static int changedRegister(final int opcode) {
+        int x = (opcode >> 8) & 0xF;
+        switch (opcode >> 12) {
+            case SET_VX_TO_VALUE:
+            case ADD_VALUE_TO_VS:
+            case STORE_TO_VX_FROM_VY_SET_OR_AND_XOR:
+            case RANDOM_BYTE_AND_KK:
+                return x;
+            case DRAW_SPRITE:
+                return 0xF;
+            case ALL_F_INSTRUCTIONS:
+                int kk = opcode & 0xFF;
+                return kk == 0x07 || kk == 0x0A || kk == 0x65 ? x : TraceRecorder.NO_REGISTER;
+            default:
+                return TraceRecorder.NO_REGISTER;
+        }
+    }
+
+    private void step() {
+        int instruction = memory.read(PC);
+        int instruction2 = memory.read(PC + 1);
+        if (heatMap != null) {
+            heatMap.fetch(PC, xoChip && instruction == 0xF0 && instruction2 == 0x00 ? 4 : 2);
+        }
         byte opcode = (byte) (instruction >> 4);
 
         //Register may be used
@@ -174,7 +675,12 @@ public class Chip8Emulator implements Emulator, Observable {
                         incrementProgramCounter();
                         break;
                     default:
-                        throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                        if (xoChip && scroll(instruction2)) {
+                            incrementProgramCounter();
+                            break;
+                        }
+                        illegalInstruction();
+                        return;
                 }
                 break;
             case ADD_VALUE_TO_VS:
@@ -217,25 +723,32 @@ public class Chip8Emulator implements Emulator, Observable {
                         registerSHL(VX);
                         break;
                     default:
-                        throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                        illegalInstruction();
+                        return;
                 }
                 incrementProgramCounter();
                 break;
             case SKIP_IF_VX_EQUALS_NN:
                 if (this.register[VX] == kk) {
-                    incrementProgramCounter();
+                    skipNextInstruction();
                 }
                 incrementProgramCounter();
                 break;
             case SKIP_IF_VX_NOT_EQUALS_NN:
                 if(this.register[VX] != kk) {
-                    incrementProgramCounter();
+                    skipNextInstruction();
                 }
                 incrementProgramCounter();
                 break;
             case SKIP_NEXT_INSTRUCTION_IF_VX_EQUALS_VY:
-                if(this.register[VX] == this.register[VY]) {
+                if (xoChip && (last4Bits == 0x2 || last4Bits == 0x3)) {
+                    // 5xy2 - save Vx..Vy to memory at I, 5xy3 - load them, I stays unchanged.
+                    transferRegisterRange(VX, VY, last4Bits == 0x2);
                     incrementProgramCounter();
+                    break;
+                }
+                if(this.register[VX] == this.register[VY]) {
+                    skipNextInstruction();
                 }
                 incrementProgramCounter();
                 break;
@@ -254,52 +767,134 @@ public class Chip8Emulator implements Emulator, Observable {
                 incrementProgramCounter();
                 break;
             case JUMP_TO_ADDR_PLUS_V0:
-                throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                illegalInstruction();
+                return;
             case RANDOM_BYTE_AND_KK:
-                throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                // Cxkk - RND Vx, byte
+                this.register[VX] = (short) (nextRandom() & kk);
+                incrementProgramCounter();
+                break;
             case SKIP_IF_KEY_PRESSED:
-                throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                switch (kk) {
+                    case 0x9E:
+                        // Ex9E - SKP Vx
+                        if (keypad.isPressed(this.register[VX])) {
+                            skipNextInstruction();
+                        }
+                        break;
+                    case 0xA1:
+                        // ExA1 - SKNP Vx
+                        if (!keypad.isPressed(this.register[VX])) {
+                            skipNextInstruction();
+                        }
+                        break;
+                    default:
+                        illegalInstruction();
+                        return;
+                }
+                incrementProgramCounter();
+                break;
             case ALL_F_INSTRUCTIONS:
                 switch (kk) {
+                    case 0x00:
+                        // F000 nnnn - LD I, long: I = the 16-bit word after the instruction.
+                        if (!xoChip || VX != 0) {
+                            illegalInstruction();
+                            return;
+                        }
+                        I = (short) (memory.read(PC + 2) << 8 | memory.read(PC + 3));
+                        incrementProgramCounter();
+                        break;
+                    case 0x01:
+                        // Fn01 - PLANE n: Dxyn, 00E0 and scrolling act on the planes in the mask n.
+                        if (!xoChip || VX > 3) {
+                            illegalInstruction();
+                            return;
+                        }
+                        selectedPlanes = VX;
+                        break;
+                    case 0x02:
+                        // F002 - AUDIO: load the 16-byte audio pattern from memory at I.
+                        if (!xoChip || VX != 0) {
+                            illegalInstruction();
+                            return;
+                        }
+                        loadAudioPattern();
+                        break;
+                    case 0x3A:
+                        // Fx3A - PITCH Vx
+                        if (!xoChip) {
+                            illegalInstruction();
+                            return;
+                        }
+                        pitch = this.register[VX] & 0xFF;
+                        break;
                     case 0x07:
                         this.register[VX] = (short) delayTimer;
                         break;
                     case 0x0A:
-                        throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                        // Fx0A - LD Vx, K
+                        int keys = keypad.getMask();
+                        if (keys == 0) {
+                            waitingForKey = true;
+                            return;
+                        }
+                        waitingForKey = false;
+                        this.register[VX] = (short) Integer.numberOfTrailingZeros(keys);
+                        break;
                     case 0x15:
-                        throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                        // Fx15 - LD DT, Vx
+                        delayTimer = this.register[VX] & 0xFF;
+                        break;
                     case 0x18:
-                        throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                        // Fx18 - LD ST, Vx
+                        boolean wasSounding = soundTimer > 0;
+                        soundTimer = this.register[VX] & 0xFF;
+                        if (eventBus != null && wasSounding != soundTimer > 0) {
+                            eventBus.publishSound(this, !wasSounding);
+                        }
+                        break;
                     case 0x1E:
                         I = (short) (this.register[VX] + I);
                         break;
                     case 0x29:
-                        throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                        illegalInstruction();
+                        return;
                     case 0x33:
                         short value = this.register[VX];
-                        memory[I] = value / 100;
-                        memory[I+1] = (value / 10) % 10;
-                        memory[I+2] = value % 10;
+                        memory.write(address(0), value / 100);
+                        memory.write(address(1), (value / 10) % 10);
+                        memory.write(address(2), value % 10);
+                        if (heatMap != null) {
+                            heatMap.write(address(0), 3);
+                        }
                         break;
                     case 0x55:
                         for(int i = 0; i <= VX; i++) {
-                            memory[I + i] = this.register[i];
+                            memory.write(address(i), this.register[i]);
+                        }
+                        if (heatMap != null) {
+                            heatMap.write(address(0), VX + 1);
                         }
                         break;
                     case 0x65:
                         for(int i = 0; i<=VX; i++) {
-                            this.register[i] = (short) memory[I + i];
+                            this.register[i] = (short) memory.read(address(i));
+                        }
+                        if (heatMap != null) {
+                            heatMap.read(address(0), VX + 1);
                         }
                         break;
                     default:
-                        throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                        illegalInstruction();
+                        return;
                 }
                 incrementProgramCounter();
                 break;
             default:
-                throw new UnsupportedOperationException("No supported instruction: " + instruction);
+                illegalInstruction();
+                return;
         }
-        this.notifyObservers();
     }
 
     /**
@@ -317,41 +912,160 @@ public class Chip8Emulator implements Emulator, Observable {
      */
     private void drawSprite(short xCoordinate, short yCoordinate, short height) {
         this.register[0xF] = 0;
+        this.displayVersion++;
 
-        for (int row = 0; row < height; row++) {
-
-            // sprite is hex-encoded. 0xF0 => 11110000 would result in drawing 4 pixels => ****
-            // 0xA0 => 10100000 would result in drawing 2 pixels => * *
-            short sprite = (short) this.memory[I + row];
-
-            for (int col = 0; col < 8; col++) {
-
-                // get the pixel at the recent col position
-                short pixel = (short) ((sprite >> (7 - col)) & 0x1);
+        // XO-CHIP draws a 16x16 sprite for Dxy0 and wraps sprites around the edges, classic programs clip them.
+        int width = xoChip && height == 0 ? 16 : 8;
+        int rows = xoChip && height == 0 ? 16 : height;
+        int x = xoChip ? xCoordinate & (DISPLAY_WIDTH - 1) : xCoordinate;
+        int y = xoChip ? yCoordinate & (DISPLAY_HEIGHT - 1) : yCoordinate;
+        int bytesPerRow = width / 8;
+        int offset = 0;
+        for (int plane = 0; plane < PLANES; plane++) {
+            if ((selectedPlanes & (1 << plane)) == 0) {
+                continue;
+            }
+            // Each selected plane takes the next sprite from memory.
+            drawPlane(plane * DISPLAY_HEIGHT, x, y, width, rows, offset);
+            offset += rows * bytesPerRow;
+        }
 
-                short x = (short) (xCoordinate + col);
-                short y = (short) (yCoordinate + row);
+        if (heatMap != null) {
+            heatMap.read(address(0), offset);
+        }
+        if (eventBus != null) {
+            if (xoChip && (x + width > DISPLAY_WIDTH || y + rows > DISPLAY_HEIGHT)) {
+                eventBus.publishDisplayChanged(this, 0, 0, DISPLAY_WIDTH, DISPLAY_HEIGHT);
+                return;
+            }
+            // Pixels beyond the right and bottom edge are clipped, not wrapped.
+            int changedWidth = Math.min(width, DISPLAY_WIDTH - x);
+            int changedRows = Math.min(rows, DISPLAY_HEIGHT - y);
+            if (changedWidth > 0 && changedRows > 0) {
+                eventBus.publishDisplayChanged(this, x, y, changedWidth, changedRows);
+            }
+        }
+    }
 
-                // x goes out of bounds of the display
-                if (x >= DISPLAY_WIDTH) {
+    /**
+     * XORs one sprite into the plane whose first row is {@code base}, a whole row at a time.
+     * <p>
+     * The sprite row is placed at the top of a long and moved right by x: shifted for classic programs, so
+     * pixels beyond the right edge fall off, rotated for XO-CHIP, so they reappear on the left.
+     */
+    private void drawPlane(final int base, final int x, final int y, final int width, final int rows, final int offset) {
+        if (x >= DISPLAY_WIDTH) {
+            return;
+        }
+        int bytesPerRow = width / 8;
+        for (int row = 0; row < rows; row++) {
+            int py = y + row;
+            if (py >= DISPLAY_HEIGHT) {
+                if (!xoChip) {
                     continue;
                 }
+                py -= DISPLAY_HEIGHT;
+            }
+            int address = offset + row * bytesPerRow;
+            long bits = memory.read(address(address));
+            if (width == 16) {
+                bits = bits << 8 | memory.read(address(address + 1));
+            }
+            bits <<= 64 - width;
+            long sprite = xoChip ? Long.rotateRight(bits, x) : bits >>> x;
+            long old = planes[base + py];
+            if ((old & sprite) != 0) {
+                this.register[0xF] = 1;
+            }
+            planes[base + py] = old ^ sprite;
+        }
+    }
 
-                // y goes out of bounds of the display
-                if (y >= DISPLAY_HEIGHT) {
-                    continue;
+    /**
+     * 00Cn scrolls the selected planes down n rows, 00Dn up n rows, 00FB right and 00FC left by 4 pixels.
+     *
+     * @return false if {@code kk} is not a scroll instruction.
+     */
+    private boolean scroll(final int kk) {
+        boolean down = (kk & 0xF0) == 0xC0;
+        boolean up = (kk & 0xF0) == 0xD0;
+        if (!down && !up && kk != 0xFB && kk != 0xFC) {
+            return false;
+        }
+        int n = kk & 0xF;
+        for (int plane = 0; plane < PLANES; plane++) {
+            if ((selectedPlanes & (1 << plane)) == 0) {
+                continue;
+            }
+            int base = plane * DISPLAY_HEIGHT;
+            if (down) {
+                System.arraycopy(planes, base, planes, base + n, DISPLAY_HEIGHT - n);
+                Arrays.fill(planes, base, base + n, 0);
+            } else if (up) {
+                System.arraycopy(planes, base + n, planes, base, DISPLAY_HEIGHT - n);
+                Arrays.fill(planes, base + DISPLAY_HEIGHT - n, base + DISPLAY_HEIGHT, 0);
+            } else {
+                for (int y = base; y < base + DISPLAY_HEIGHT; y++) {
+                    planes[y] = kk == 0xFB ? planes[y] >>> 4 : planes[y] << 4;
                 }
+            }
+        }
+        this.displayVersion++;
+        if (eventBus != null) {
+            eventBus.publishDisplayChanged(this, 0, 0, DISPLAY_WIDTH, DISPLAY_HEIGHT);
+        }
+        return true;
+    }
 
-                if (pixel == 1) {
-                    if (this.display[x + y * DISPLAY_WIDTH] == 1) {
-                        this.register[0xF] = 1;
-                        this.display[x + y * DISPLAY_WIDTH] = 0;
-                    } else {
-                        this.display[x + y * DISPLAY_WIDTH] = pixel;
-                    }
-                }
+    /**
+     * 5xy2 and 5xy3 transfer Vx to Vy, in descending order if x > y, from or to memory starting at I.
+     */
+    private void transferRegisterRange(final int x, final int y, final boolean save) {
+        int step = x <= y ? 1 : -1;
+        int count = Math.abs(y - x) + 1;
+        for (int i = 0; i < count; i++) {
+            int index = x + i * step;
+            if (save) {
+                memory.write(address(i), this.register[index]);
+            } else {
+                this.register[index] = (short) memory.read(address(i));
+            }
+        }
+        if (heatMap != null) {
+            if (save) {
+                heatMap.write(address(0), count);
+            } else {
+                heatMap.read(address(0), count);
+            }
+        }
+    }
+
+    private void loadAudioPattern() {
+        for (int word = 0; word < audioPattern.length; word++) {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = bits << 8 | memory.read(address(word * 8 + i));
             }
+            audioPattern[word] = bits;
+        }
+        if (heatMap != null) {
+            heatMap.read(address(0), 16);
+        }
+    }
+
+    // Address I + offset, wrapped to the memory size.
+    private int address(final int offset) {
+        return ((I & 0xFFFF) + offset) & addressMask;
+    }
+
+    /**
+     * Skips the next instruction, which is four bytes long if it is XO-CHIP's F000 nnnn.
+     */
+    private void skipNextInstruction() {
+        if (xoChip && memory.read(PC + 2) == 0xF0 && memory.read(PC + 3) == 0x00) {
+            incrementProgramCounter();
         }
+        incrementProgramCounter();
     }
 
     /**
@@ -472,15 +1186,41 @@ public class Chip8Emulator implements Emulator, Observable {
     @Override
     public void executeCycles(int n) {
         assert n > 0;
+        if (isDebugging()) {
+            run(n);
+            return;
+        }
         while (n > 0) {
             executeCycle();
+            if (waitingForKey) {
+                // Fx0A: sleep until the keypad reports a press instead of spinning on the instruction.
+                if (keypad.awaitKeyPress() == 0) {
+                    return;
+                }
+                continue;
+            }
             n--;
-            this.notifyObservers();
         }
     }
 
+    /**
+     * Executes up to {@code maxCycles} instructions and stops early when a breakpoint of the debugger is hit,
+     * see {@link #run(long, boolean)}.
+     *
+     * @return number of executed instructions.
+     */
+    public long runUntilBreakpoint(final long maxCycles) {
+        long start = cycles;
+        run(maxCycles);
+        return cycles - start;
+    }
+
+    /**
+     * Replaces the whole memory, font set included, with the low bytes of {@code memory}, which must be
+     * {@link #getMemorySize()} long.
+     */
     public void setMemory(int[] memory) {
-        this.memory = memory;
+        this.memory.load(memory);
     }
 
     @Override
@@ -488,7 +1228,7 @@ public class Chip8Emulator implements Emulator, Observable {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < DISPLAY_HEIGHT; i++) {
             for (int j = 0; j < DISPLAY_WIDTH; j++) {
-                boolean isOn = display[j + i * DISPLAY_WIDTH] == 1;
+                boolean isOn = ((planes[i] | planes[DISPLAY_HEIGHT + i]) << j) < 0;
                 if (isOn) {
                     sb.append("X");
                 } else {
@@ -502,43 +1242,118 @@ public class Chip8Emulator implements Emulator, Observable {
     }
 
     private void resetDisplay() {
-        Arrays.fill(display, (short) 0);
+        for (int plane = 0; plane < PLANES; plane++) {
+            if ((selectedPlanes & (1 << plane)) != 0) {
+                Arrays.fill(planes, plane * DISPLAY_HEIGHT, (plane + 1) * DISPLAY_HEIGHT, 0);
+            }
+        }
+        this.displayVersion++;
+        if (eventBus != null) {
+            eventBus.publishDisplayChanged(this, 0, 0, DISPLAY_WIDTH, DISPLAY_HEIGHT);
+        }
     }
 
     @Override
-    public void addObserver(Observer observer) {
-        this.observers.add(observer);
+    public Chip8Emulator copy() {
+        Chip8Emulator emulator = new Chip8Emulator(memory.copy(), keypad, debugger);
+        copyInto(emulator);
+        return emulator;
     }
 
-    @Override
-    public void removeObserver(Observer observer) {
-        this.observers.remove(observer);
+    /**
+     * Creates an independent machine in the same state. Unlike {@link #copy()}, which keeps the attached
+     * input device, debugger and event bus, the fork gets its own keypad (with the same keys down) and
+     * neither publishes events nor counts memory accesses, so it can be driven on another thread, e.g. to explore
+     * alternative inputs. Its debugger is only created by {@link #getDebugger()}, forks that never break cost none.
+     * Memory pages are shared with this emulator until either writes to them, so forking copies no memory.
+     */
+    public Chip8Emulator fork() {
+        Keypad keypad = new Keypad();
+        keypad.setMask(this.keypad.getMask());
+        Chip8Emulator emulator = new Chip8Emulator(memory.copy(), keypad, null);
+        copyInto(emulator);
+        emulator.eventBus = null;
+        emulator.heatMap = null;
+        emulator.keypad = keypad;
+        emulator.debugger = null;
+        return emulator;
     }
 
-    @Override
-    public void notifyObservers() {
-        this.observers.forEach(obs -> obs.update());
+    /**
+     * Copies the complete state into {@code target}, reusing its arrays where the sizes match. Memory is not
+     * copied: both emulators share its pages until one of them writes to a page.
+     * Unlike {@link #copy()} this does not allocate, so snapshots can be recycled.
+     */
+    public void copyInto(Chip8Emulator target) {
+        if (target.memory.size() == this.memory.size()) {
+            this.memory.copyInto(target.memory);
+        } else {
+            target.memory = this.memory.copy();
+        }
+        target.addressMask = this.addressMask;
+        target.xoChip = this.xoChip;
+        System.arraycopy(this.planes, 0, target.planes, 0, this.planes.length);
+        target.selectedPlanes = this.selectedPlanes;
+        System.arraycopy(this.audioPattern, 0, target.audioPattern, 0, this.audioPattern.length);
+        target.pitch = this.pitch;
+        System.arraycopy(this.register, 0, target.register, 0, NUMBER_REGISTERS);
+        target.stack = copyOf(this.stack, target.stack);
+        target.displayVersion = this.displayVersion;
+        target.keypad = this.keypad;
+        target.debugger = this.debugger;
+        target.ownsDebugger = false;
+        target.waitingForKey = this.waitingForKey;
+        target.PC = this.PC;
+        target.SP = this.SP;
+        target.I = this.I;
+        target.delayTimer = this.delayTimer;
+        target.soundTimer = this.soundTimer;
+        target.randomState = this.randomState;
+        target.cycles = this.cycles;
+        target.frames = this.frames;
+        target.instructionsPerFrame = this.instructionsPerFrame;
+        target.timing = this.timing;
+        target.costDebt = this.costDebt;
+        target.eventBus = this.eventBus;
+        target.heatMap = this.heatMap;
     }
 
-    public Chip8Emulator copy() {
-        Chip8Emulator emulator = new Chip8Emulator();
-        emulator.memory = this.memory.clone();
-        emulator.display = this.display.clone();
-        emulator.keyboard = this.keyboard.clone();
-        emulator.register = this.register.clone();
-        emulator.stack = this.stack.clone();
-        emulator.PC = this.PC;
-        emulator.SP = this.SP;
-        emulator.I = this.I;
-        emulator.delayTimer = this.delayTimer;
-        emulator.soundTimer = this.soundTimer;
-        for (Observer obs : this.observers) {emulator.addObserver(obs);}
-        return emulator;
+    /**
+     * @return approximate heap size of this machine's own state, including its debugger unless it was copied
+     * from another emulator, but not the keypad, event bus and heat map. Assumes 16-byte object and array headers.
+     */
+    public long estimateHeapBytes() {
+        return 16 + 64
+                + (ownsDebugger ? debugger.estimateHeapBytes() : 0)
+                + memory.estimateHeapBytes()
+                + 16 + 8L * planes.length + 16 + 8L * audioPattern.length
+                + 16 + 2L * register.length
+                + 16 + 4L * stack.length;
+    }
+
+    private static int[] copyOf(int[] source, int[] target) {
+        if (target.length != source.length) {
+            return source.clone();
+        }
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
     }
 
     public String getPCInstr() {
-        int instruction = memory[PC];
-        int instruction2 = memory[PC + 1];
-        return String.format("0x"+"%02X%02X", instruction, instruction2);
+        return appendPCInstr(new StringBuilder(6)).toString();
+    }
+
+    /**
+     * @return the instruction at the PC as one 16-bit value.
+     */
+    public int getPCInstruction() {
+        return memory.read(PC) << 8 | memory.read(PC + 1);
+    }
+
+    /**
+     * Appends the instruction at the PC in the format of {@link #getPCInstr()}, e.g. "0x00E0".
+     */
+    public StringBuilder appendPCInstr(StringBuilder sb) {
+        return Disassembler.hex(sb, getPCInstruction(), 4);
     }
 }
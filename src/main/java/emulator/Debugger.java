@@ -0,0 +1,280 @@
+package emulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Breakpoints and watchpoints for {@link Chip8Emulator}.
+ * <p>
+ * PC breakpoints and memory watchpoints are bitmaps over the emulator's address space, 4 KB or XO-CHIP's 64 KB,
+ * in which addresses wrap around like the emulator's. Opcode breakpoints are a bitmap over all 65536 opcodes, so
+ * every check is a single bit test. The emulator only switches to its instrumented
+ * execution loop while at least one breakpoint is armed; otherwise the debugger costs nothing.
+ * <p>
+ * PC, opcode and memory breakpoints stop before the instruction executes, register conditions right after it.
+ */
+public class Debugger {
+
+    public enum HitType {
+        PC, OPCODE, MEMORY_READ, MEMORY_WRITE, REGISTER
+    }
+
+    public enum Comparison {
+        EQUAL, NOT_EQUAL, LESS, GREATER
+    }
+
+    private static final class RegisterCondition {
+        final int register;
+        final Comparison comparison;
+        final int value;
+
+        RegisterCondition(int register, Comparison comparison, int value) {
+            this.register = register;
+            this.comparison = comparison;
+            this.value = value;
+        }
+
+        boolean matches(short[] registers) {
+            int current = registers[register];
+            switch (comparison) {
+                case EQUAL: return current == value;
+                case NOT_EQUAL: return current != value;
+                case LESS: return current < value;
+                default: return current > value;
+            }
+        }
+    }
+
+    private static final int CLASSIC_ADDRESS_SPACE = 0x1000;
+
+    private final int addressMask;
+    private final long[] pcBreakpoints;
+    private final long[] readWatchpoints;
+    private final long[] writeWatchpoints;
+    private final long[] opcodeBreakpoints = new long[0x10000 / 64];
+    private final List<RegisterCondition> registerConditions = new ArrayList<>();
+
+    private int armedPc;
+    private int armedOpcodes;
+    private int armedReads;
+    private int armedWrites;
+
+    private HitType lastHit;
+    private int lastHitAddress;
+
+    /**
+     * A debugger for the classic 4 KB address space.
+     */
+    public Debugger() {
+        this(CLASSIC_ADDRESS_SPACE);
+    }
+
+    /**
+     * @param addressSpace memory size of the emulator, a power of two of at least 64 bytes.
+     */
+    public Debugger(final int addressSpace) {
+        if (addressSpace < 64 || Integer.bitCount(addressSpace) != 1) {
+            throw new IllegalArgumentException("Address space must be a power of two of at least 64: " + addressSpace);
+        }
+        this.addressMask = addressSpace - 1;
+        this.pcBreakpoints = new long[addressSpace / 64];
+        this.readWatchpoints = new long[addressSpace / 64];
+        this.writeWatchpoints = new long[addressSpace / 64];
+    }
+
+    /**
+     * @return true if any breakpoint, watchpoint or register condition is set.
+     */
+    public boolean isArmed() {
+        return armedPc + armedOpcodes + armedReads + armedWrites != 0 || !registerConditions.isEmpty();
+    }
+
+    public void addBreakpoint(final int address) {
+        armedPc += set(pcBreakpoints, address & addressMask, true);
+    }
+
+    public void removeBreakpoint(final int address) {
+        armedPc -= set(pcBreakpoints, address & addressMask, false);
+    }
+
+    public boolean hasBreakpoint(final int address) {
+        return test(pcBreakpoints, address & addressMask);
+    }
+
+    /**
+     * Breaks on every opcode that equals {@code pattern} in the bits selected by {@code mask},
+     * e.g. pattern 0xD000 with mask 0xF000 stops on every draw.
+     */
+    public void addOpcodeBreakpoint(final int pattern, final int mask) {
+        for (int opcode = 0; opcode < 0x10000; opcode++) {
+            if ((opcode & mask) == (pattern & mask)) {
+                armedOpcodes += set(opcodeBreakpoints, opcode, true);
+            }
+        }
+    }
+
+    public void removeOpcodeBreakpoint(final int pattern, final int mask) {
+        for (int opcode = 0; opcode < 0x10000; opcode++) {
+            if ((opcode & mask) == (pattern & mask)) {
+                armedOpcodes -= set(opcodeBreakpoints, opcode, false);
+            }
+        }
+    }
+
+    public void watchRead(final int address, final int length) {
+        for (int i = 0; i < length; i++) {
+            armedReads += set(readWatchpoints, (address + i) & addressMask, true);
+        }
+    }
+
+    public void watchWrite(final int address, final int length) {
+        for (int i = 0; i < length; i++) {
+            armedWrites += set(writeWatchpoints, (address + i) & addressMask, true);
+        }
+    }
+
+    public void addRegisterCondition(final int register, Comparison comparison, final int value) {
+        if (register < 0 || register > 0xF) {
+            throw new IllegalArgumentException("No such register: V" + register);
+        }
+        registerConditions.add(new RegisterCondition(register, comparison, value));
+    }
+
+    public void clear() {
+        Arrays.fill(pcBreakpoints, 0);
+        Arrays.fill(opcodeBreakpoints, 0);
+        Arrays.fill(readWatchpoints, 0);
+        Arrays.fill(writeWatchpoints, 0);
+        registerConditions.clear();
+        armedPc = armedOpcodes = armedReads = armedWrites = 0;
+    }
+
+    /**
+     * @return the reason of the last stop, null if the last run did not hit anything.
+     */
+    public HitType getLastHit() {
+        return lastHit;
+    }
+
+    /**
+     * @return the PC or memory address of the last hit, or the register for {@link HitType#REGISTER}.
+     */
+    public int getLastHitAddress() {
+        return lastHitAddress;
+    }
+
+    /**
+     * @return approximate heap size of the bitmaps and conditions, assuming 16-byte object and array headers.
+     */
+    public long estimateHeapBytes() {
+        return 16 + 40
+                + 3 * (16 + 8L * pcBreakpoints.length) + 16 + 8L * opcodeBreakpoints.length
+                + 16 + 16 + 4L * registerConditions.size() + 32L * registerConditions.size();
+    }
+
+    void clearHit() {
+        lastHit = null;
+    }
+
+    /**
+     * Checks the instruction about to be executed.
+     *
+     * @param xoChip true if the emulator runs XO-CHIP programs, which changes the memory some instructions access.
+     * @param planes bit mask of the selected bitplanes, 1 for classic programs.
+     * @return true if execution has to stop before it.
+     */
+    boolean checkBefore(final int pc, final int opcode, final int i, final boolean xoChip, final int planes) {
+        if (armedPc != 0 && test(pcBreakpoints, pc & addressMask)) {
+            return hit(HitType.PC, pc & addressMask);
+        }
+        if (armedOpcodes != 0 && test(opcodeBreakpoints, opcode & 0xFFFF)) {
+            return hit(HitType.OPCODE, pc & addressMask);
+        }
+        if (armedReads + armedWrites == 0) {
+            return false;
+        }
+        // Memory accessed through I: Dxyn reads n bytes per selected plane (32 for XO-CHIP's 16x16 Dxy0),
+        // Fx33 writes 3, Fx55 writes and Fx65 reads x + 1, and for XO-CHIP 5xy2 writes and 5xy3 reads
+        // |x - y| + 1, F002 reads 16.
+        int x = (opcode >> 8) & 0xF;
+        int y = (opcode >> 4) & 0xF;
+        switch (opcode & 0xF000) {
+            case 0xD000: {
+                int n = opcode & 0xF;
+                int bytes = xoChip && n == 0 ? 32 : n;
+                return checkRange(readWatchpoints, armedReads, HitType.MEMORY_READ, i,
+                        bytes * Integer.bitCount(planes));
+            }
+            case 0x5000:
+                if (!xoChip) {
+                    return false;
+                }
+                int count = Math.abs(x - y) + 1;
+                switch (opcode & 0xF) {
+                    case 0x2: return checkRange(writeWatchpoints, armedWrites, HitType.MEMORY_WRITE, i, count);
+                    case 0x3: return checkRange(readWatchpoints, armedReads, HitType.MEMORY_READ, i, count);
+                    default: return false;
+                }
+            case 0xF000:
+                switch (opcode & 0xFF) {
+                    case 0x02: return xoChip && x == 0
+                            && checkRange(readWatchpoints, armedReads, HitType.MEMORY_READ, i, 16);
+                    case 0x33: return checkRange(writeWatchpoints, armedWrites, HitType.MEMORY_WRITE, i, 3);
+                    case 0x55: return checkRange(writeWatchpoints, armedWrites, HitType.MEMORY_WRITE, i, x + 1);
+                    case 0x65: return checkRange(readWatchpoints, armedReads, HitType.MEMORY_READ, i, x + 1);
+                    default: return false;
+                }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks the register conditions after an instruction.
+     *
+     * @return true if execution has to stop.
+     */
+    boolean checkAfter(short[] registers) {
+        for (int n = 0; n < registerConditions.size(); n++) {
+            RegisterCondition condition = registerConditions.get(n);
+            if (condition.matches(registers)) {
+                return hit(HitType.REGISTER, condition.register);
+            }
+        }
+        return false;
+    }
+
+    private boolean checkRange(long[] bitmap, final int armed, HitType type, final int start, final int length) {
+        if (armed == 0) {
+            return false;
+        }
+        for (int offset = 0; offset < length; offset++) {
+            int address = (start + offset) & addressMask;
+            if (test(bitmap, address)) {
+                return hit(type, address);
+            }
+        }
+        return false;
+    }
+
+    private boolean hit(HitType type, final int address) {
+        lastHit = type;
+        lastHitAddress = address;
+        return true;
+    }
+
+    private static boolean test(long[] bitmap, final int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return 1 if the bit changed, 0 otherwise.
+     */
+    private static int set(long[] bitmap, final int index, final boolean value) {
+        long word = bitmap[index >>> 6];
+        long updated = value ? word | (1L << index) : word & ~(1L << index);
+        bitmap[index >>> 6] = updated;
+        return word == updated ? 0 : 1;
+    }
+}
@@ -0,0 +1,141 @@
+package emulator;
+
+import util.Hashing;
+
+/**
+ * Runs the reference interpreter and another {@link Emulator} implementation in lockstep and reports the
+ * first instruction after which their states differ.
+ * <p>
+ * Full state hashes are only compared every {@code checkInterval} cycles. When a check fails, both engines
+ * are restored from the last matching checkpoint and the diverging cycle is found by bisection, so the cost
+ * of the comparison stays small for long runs.
+ */
+public class DifferentialChecker {
+
+    /**
+     * Describes where two engines first disagreed.
+     */
+    public static class Divergence {
+        private final long cycle;
+        private final int pc;
+        private final String instruction;
+        private final long referenceHash;
+        private final long candidateHash;
+
+        Divergence(long cycle, int pc, String instruction, long referenceHash, long candidateHash) {
+            this.cycle = cycle;
+            this.pc = pc;
+            this.instruction = instruction;
+            this.referenceHash = referenceHash;
+            this.candidateHash = candidateHash;
+        }
+
+        /**
+         * @return number of executed cycles after which the states first differ, starting at 1.
+         */
+        public long getCycle() {
+            return cycle;
+        }
+
+        /**
+         * @return address of the instruction that caused the divergence.
+         */
+        public int getPC() {
+            return pc;
+        }
+
+        public String getInstruction() {
+            return instruction;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Diverged in cycle %d at PC 0x%03X (%s): reference %016x, candidate %016x",
+                    cycle, pc, instruction, referenceHash, candidateHash);
+        }
+    }
+
+    // State hash reported for an engine that threw while executing.
+    private static final long FAULT_SEED = 0xBADC0DEL;
+
+    private final int checkInterval;
+    // Set by runAndHash when the engine threw.
+    private boolean faulted;
+
+    public DifferentialChecker(final int checkInterval) {
+        if (checkInterval <= 0) {
+            throw new IllegalArgumentException("Check interval must be positive: " + checkInterval);
+        }
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Runs both engines for up to {@code cycles} cycles. They are expected to start in the same state.
+     * If both engines fail on the same instruction, the run ends there without a divergence.
+     *
+     * @return the first divergence, or null if both engines agree.
+     */
+    public Divergence run(Chip8Emulator reference, Emulator candidate, final long cycles) {
+        Chip8Emulator referenceCheckpoint = reference.copy();
+        Emulator candidateCheckpoint = candidate.copy();
+        long checkpointCycle = 0;
+
+        if (reference.stateHash() != candidate.stateHash()) {
+            return new Divergence(0, reference.getProgramCounter(), reference.getPCInstr(),
+                    reference.stateHash(), candidate.stateHash());
+        }
+
+        while (checkpointCycle < cycles) {
+            int steps = (int) Math.min(checkInterval, cycles - checkpointCycle);
+            long referenceHash = runAndHash(reference, steps);
+            boolean referenceFaulted = faulted;
+            long candidateHash = runAndHash(candidate, steps);
+
+            if (referenceHash != candidateHash) {
+                return bisect(referenceCheckpoint, candidateCheckpoint, checkpointCycle, steps);
+            }
+            if (referenceFaulted) {
+                return null;
+            }
+            checkpointCycle += steps;
+            referenceCheckpoint = reference.copy();
+            candidateCheckpoint = candidate.copy();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the smallest number of steps after the checkpoint for which the engines disagree.
+     * Zero steps are known to agree and {@code steps} are known to differ.
+     */
+    private Divergence bisect(Chip8Emulator referenceCheckpoint, Emulator candidateCheckpoint,
+                              final long checkpointCycle, final int steps) {
+        int agree = 0;
+        int differ = steps;
+        while (differ - agree > 1) {
+            int middle = (agree + differ) >>> 1;
+            if (runAndHash(referenceCheckpoint.copy(), middle) == runAndHash(candidateCheckpoint.copy(), middle)) {
+                agree = middle;
+            } else {
+                differ = middle;
+            }
+        }
+        Chip8Emulator before = referenceCheckpoint.copy();
+        runAndHash(before, differ - 1);
+        return new Divergence(checkpointCycle + differ, before.getProgramCounter(), before.getPCInstr(),
+                runAndHash(before, 1), runAndHash(candidateCheckpoint.copy(), differ));
+    }
+
+    private long runAndHash(Emulator emulator, final int steps) {
+        faulted = false;
+        try {
+            for (int i = 0; i < steps; i++) {
+                emulator.executeCycle();
+            }
+            return emulator.stateHash();
+        } catch (RuntimeException e) {
+            faulted = true;
+            return Hashing.finish(Hashing.mix(FAULT_SEED, e.getClass().getName().hashCode()));
+        }
+    }
+}
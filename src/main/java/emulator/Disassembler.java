@@ -0,0 +1,137 @@
+package emulator;
+
+/**
+ * Turns opcodes into the mnemonics of
+ * <a href="http://devernay.free.fr/hacks/chip8/C8TECH10.HTM#3.1">Cowgod's Chip-8 Technical Reference</a>,
+ * and XO-CHIP's additions into similar ones.
+ */
+public final class Disassembler {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private Disassembler() {
+    }
+
+    public static String disassemble(final int opcode) {
+        return append(new StringBuilder(16), opcode).toString();
+    }
+
+    /**
+     * Appends the mnemonic of {@code opcode} to {@code sb}.
+     */
+    public static StringBuilder append(StringBuilder sb, final int opcode) {
+        int x = (opcode >> 8) & 0xF;
+        int y = (opcode >> 4) & 0xF;
+        int n = opcode & 0xF;
+        int kk = opcode & 0xFF;
+        int nnn = opcode & 0xFFF;
+        switch (opcode >> 12 & 0xF) {
+            case 0x0:
+                if (opcode == 0x00E0) {
+                    return sb.append("CLS");
+                }
+                if (opcode == 0x00EE) {
+                    return sb.append("RET");
+                }
+                if ((opcode & 0xFFF0) == 0x00C0) {
+                    return hex(sb.append("SCD "), n, 1);
+                }
+                if ((opcode & 0xFFF0) == 0x00D0) {
+                    return hex(sb.append("SCU "), n, 1);
+                }
+                if (opcode == 0x00FB) {
+                    return sb.append("SCR");
+                }
+                if (opcode == 0x00FC) {
+                    return sb.append("SCL");
+                }
+                return hex(sb.append("SYS "), nnn, 3);
+            case 0x1:
+                return hex(sb.append("JP "), nnn, 3);
+            case 0x2:
+                return hex(sb.append("CALL "), nnn, 3);
+            case 0x3:
+                return hex(v(sb.append("SE "), x).append(", "), kk, 2);
+            case 0x4:
+                return hex(v(sb.append("SNE "), x).append(", "), kk, 2);
+            case 0x5:
+                if (n == 0x2) {
+                    return v(v(sb.append("LD [I], "), x).append(" - "), y);
+                }
+                if (n == 0x3) {
+                    return v(v(sb.append("LD "), x).append(" - "), y).append(", [I]");
+                }
+                return v(v(sb.append("SE "), x).append(", "), y);
+            case 0x6:
+                return hex(v(sb.append("LD "), x).append(", "), kk, 2);
+            case 0x7:
+                return hex(v(sb.append("ADD "), x).append(", "), kk, 2);
+            case 0x8:
+                switch (n) {
+                    case 0x0: return v(v(sb.append("LD "), x).append(", "), y);
+                    case 0x1: return v(v(sb.append("OR "), x).append(", "), y);
+                    case 0x2: return v(v(sb.append("AND "), x).append(", "), y);
+                    case 0x3: return v(v(sb.append("XOR "), x).append(", "), y);
+                    case 0x4: return v(v(sb.append("ADD "), x).append(", "), y);
+                    case 0x5: return v(v(sb.append("SUB "), x).append(", "), y);
+                    case 0x6: return v(sb.append("SHR "), x);
+                    case 0x7: return v(v(sb.append("SUBN "), x).append(", "), y);
+                    case 0xE: return v(sb.append("SHL "), x);
+                    default: return data(sb, opcode);
+                }
+            case 0x9:
+                return v(v(sb.append("SNE "), x).append(", "), y);
+            case 0xA:
+                return hex(sb.append("LD I, "), nnn, 3);
+            case 0xB:
+                return hex(sb.append("JP V0, "), nnn, 3);
+            case 0xC:
+                return hex(v(sb.append("RND "), x).append(", "), kk, 2);
+            case 0xD:
+                return hex(v(v(sb.append("DRW "), x).append(", "), y).append(", "), n, 1);
+            case 0xE:
+                if (kk == 0x9E) {
+                    return v(sb.append("SKP "), x);
+                }
+                if (kk == 0xA1) {
+                    return v(sb.append("SKNP "), x);
+                }
+                return data(sb, opcode);
+            default:
+                switch (kk) {
+                    case 0x00: return x == 0 ? sb.append("LD I, long") : data(sb, opcode);
+                    case 0x01: return hex(sb.append("PLANE "), x, 1);
+                    case 0x02: return x == 0 ? sb.append("AUDIO") : data(sb, opcode);
+                    case 0x3A: return v(sb.append("PITCH "), x);
+                    case 0x07: return v(sb.append("LD "), x).append(", DT");
+                    case 0x0A: return v(sb.append("LD "), x).append(", K");
+                    case 0x15: return v(sb.append("LD DT, "), x);
+                    case 0x18: return v(sb.append("LD ST, "), x);
+                    case 0x1E: return v(sb.append("ADD I, "), x);
+                    case 0x29: return v(sb.append("LD F, "), x);
+                    case 0x33: return v(sb.append("LD B, "), x);
+                    case 0x55: return v(sb.append("LD [I], "), x);
+                    case 0x65: return v(sb.append("LD "), x).append(", [I]");
+                    default: return data(sb, opcode);
+                }
+        }
+    }
+
+    /**
+     * Appends {@code digits} upper case hex digits of {@code value} with a "0x" prefix, without formatting.
+     */
+    public static StringBuilder hex(StringBuilder sb, final int value, final int digits) {
+        sb.append("0x");
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            sb.append(HEX[(value >> shift) & 0xF]);
+        }
+        return sb;
+    }
+
+    private static StringBuilder v(StringBuilder sb, final int register) {
+        return sb.append('V').append(HEX[register]);
+    }
+
+    private static StringBuilder data(StringBuilder sb, final int opcode) {
+        return hex(sb.append("DW "), opcode, 4);
+    }
+}
@@ -4,4 +4,24 @@ public interface Emulator {
 
     public void executeCycle();
     public void executeCycles(final int n);
+
+    /**
+     * Executes one 60 Hz frame worth of instructions and counts the timers down once.
+     */
+    public StopReason runFrame();
+
+    /**
+     * Executes at most {@code budget} instructions, returning early if the emulator cannot or should not go on.
+     */
+    public StopReason run(final long budget);
+
+    /**
+     * @return a hash over the complete machine state. Two emulators in the same state return the same hash.
+     */
+    public long stateHash();
+
+    /**
+     * @return an independent emulator in the same state.
+     */
+    public Emulator copy();
 }
@@ -0,0 +1,146 @@
+package emulator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The 16-key hexadecimal keypad of the Chip-8.
+ * <p>
+ * The state of all keys is published as one 16-bit mask (bit n set means key n is down), so the input thread
+ * (usually the AWT event thread) and the emulator thread never have to share a lock. The emulator only reads
+ * the mask; a thread executing Fx0A can park in {@link #awaitKeyPress()} until the next key goes down.
+ * Copies of an emulator share its keypad, so any number of threads may wait and listen at the same time.
+ * <a href="http://devernay.free.fr/hacks/chip8/C8TECH10.HTM#2.3">Keyboard</a>
+ */
+public class Keypad {
+    public static final int KEY_COUNT = 0x10;
+
+    private final AtomicInteger mask = new AtomicInteger();
+
+    // Time of the oldest input event that has not been shown on screen yet, 0 if there is none.
+    private final AtomicLong pendingEventNanos = new AtomicLong();
+
+    // Replaced as a whole under the lock of this keypad, so a key press reads them without locking or allocating.
+    private volatile Thread[] waiters = new Thread[0];
+    private volatile Runnable[] pressListeners = new Runnable[0];
+
+    public void press(final int key) {
+        checkKey(key);
+        mask.getAndAccumulate(1 << key, (m, bit) -> m | bit);
+        markEvent();
+        wakeUp();
+    }
+
+    public void release(final int key) {
+        checkKey(key);
+        mask.getAndAccumulate(~(1 << key), (m, bits) -> m & bits);
+        markEvent();
+    }
+
+    public boolean isPressed(final int key) {
+        return (mask.get() & (1 << (key & 0xF))) != 0;
+    }
+
+    /**
+     * @return the current key mask, bit n is set while key n is down.
+     */
+    public int getMask() {
+        return mask.get();
+    }
+
+    /**
+     * Replaces the whole key mask at once, e.g. for scripted or remote input.
+     */
+    public void setMask(final int keys) {
+        mask.set(keys & 0xFFFF);
+        markEvent();
+        if ((keys & 0xFFFF) != 0) {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Registers a callback run on the input thread whenever a key goes down, e.g. to reschedule a parked session.
+     */
+    public synchronized void addPressListener(Runnable listener) {
+        pressListeners = with(pressListeners, listener);
+    }
+
+    public synchronized void removePressListener(Runnable listener) {
+        pressListeners = without(pressListeners, listener);
+    }
+
+    /**
+     * Parks the calling thread until at least one key is down or the thread is interrupted.
+     *
+     * @return the key mask at wake-up, 0 if the thread was interrupted.
+     */
+    public int awaitKeyPress() {
+        Thread current = Thread.currentThread();
+        // Register before the first check, a press in between leaves an unpark permit behind.
+        synchronized (this) {
+            waiters = with(waiters, current);
+        }
+        try {
+            int keys;
+            while ((keys = mask.get()) == 0) {
+                if (current.isInterrupted()) {
+                    return 0;
+                }
+                LockSupport.park(this);
+            }
+            return keys;
+        } finally {
+            synchronized (this) {
+                waiters = without(waiters, current);
+            }
+        }
+    }
+
+    /**
+     * Called by the view once a frame is on screen.
+     *
+     * @return the {@link System#nanoTime()} of the oldest input event not shown so far, or 0 if there is none.
+     */
+    public long takePendingEventNanos() {
+        return pendingEventNanos.getAndSet(0);
+    }
+
+    private void wakeUp() {
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+        for (Runnable listener : pressListeners) {
+            listener.run();
+        }
+    }
+
+    private static <T> T[] with(T[] elements, T element) {
+        T[] copy = Arrays.copyOf(elements, elements.length + 1);
+        copy[elements.length] = element;
+        return copy;
+    }
+
+    private static <T> T[] without(T[] elements, T element) {
+        for (int i = 0; i < elements.length; i++) {
+            if (elements[i] == element) {
+                T[] copy = Arrays.copyOf(elements, elements.length - 1);
+                System.arraycopy(elements, i + 1, copy, i, elements.length - i - 1);
+                return copy;
+            }
+        }
+        return elements;
+    }
+
+    private void markEvent() {
+        pendingEventNanos.compareAndSet(0, System.nanoTime());
+    }
+
+    private static void checkKey(final int key) {
+        if (key < 0 || key >= KEY_COUNT) {
+            throw new IllegalArgumentException("No such key: " + key);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package emulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Counts instruction fetches, data reads and data writes per memory address.
+ * <p>
+ * Fetches come from executing instructions, reads from Dxyn and Fx65, writes from Fx33 and Fx55. Addresses
+ * that are both fetched and written are self-modifying code; pages that are only fetched are safe for decode
+ * caching. Counts are plain arrays updated by the emulation thread only, other threads may see them late.
+ */
+public class MemoryHeatMap {
+    public static final int PAGE_SIZE = 0x100;
+
+    public enum PageKind {
+        /** Never accessed. */
+        UNUSED,
+        /** Only accessed as data. */
+        DATA,
+        /** Contains executed instructions, none of them overwritten. */
+        CODE,
+        /** Contains executed instructions that were also written. */
+        SELF_MODIFIED
+    }
+
+    private final long[] fetches;
+    private final long[] reads;
+    private final long[] writes;
+
+    public MemoryHeatMap() {
+        this(0x1000);
+    }
+
+    /**
+     * @param size size of the memory to profile in bytes, a power of two like the emulator's memory.
+     */
+    public MemoryHeatMap(final int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Memory size must be a power of two: " + size);
+        }
+        this.fetches = new long[size];
+        this.reads = new long[size];
+        this.writes = new long[size];
+    }
+
+    public int size() {
+        return fetches.length;
+    }
+
+    // All bytes of the instruction at the address, 2 or 4 for XO-CHIP's F000 nnnn.
+    void fetch(final int address, final int length) {
+        count(fetches, address, length);
+    }
+
+    void read(final int address, final int length) {
+        count(reads, address, length);
+    }
+
+    void write(final int address, final int length) {
+        count(writes, address, length);
+    }
+
+    // Accesses past the end wrap around to the start, like the emulator's addressing.
+    private static void count(long[] counts, final int address, final int length) {
+        int mask = counts.length - 1;
+        for (int i = 0; i < length; i++) {
+            counts[(address + i) & mask]++;
+        }
+    }
+
+    public long getFetches(final int address) {
+        return fetches[address];
+    }
+
+    public long getReads(final int address) {
+        return reads[address];
+    }
+
+    public long getWrites(final int address) {
+        return writes[address];
+    }
+
+    public PageKind classify(final int page) {
+        PageKind kind = PageKind.UNUSED;
+        int end = Math.min((page + 1) * PAGE_SIZE, fetches.length);
+        for (int address = page * PAGE_SIZE; address < end; address++) {
+            if (fetches[address] > 0) {
+                if (writes[address] > 0) {
+                    return PageKind.SELF_MODIFIED;
+                }
+                kind = PageKind.CODE;
+            } else if (kind == PageKind.UNUSED && (reads[address] > 0 || writes[address] > 0)) {
+                kind = PageKind.DATA;
+            }
+        }
+        return kind;
+    }
+
+    public void reset() {
+        Arrays.fill(fetches, 0);
+        Arrays.fill(reads, 0);
+        Arrays.fill(writes, 0);
+    }
+
+    /**
+     * Writes a summary per page that was accessed, followed by the {@code hottest} most accessed addresses.
+     */
+    public void writeReport(Appendable out, final int hottest) throws IOException {
+        out.append(String.format("%-6s %-13s %12s %12s %12s%n", "Page", "Kind", "Fetches", "Reads", "Writes"));
+        for (int page = 0; page * PAGE_SIZE < fetches.length; page++) {
+            PageKind kind = classify(page);
+            if (kind == PageKind.UNUSED) {
+                continue;
+            }
+            int from = page * PAGE_SIZE;
+            int to = Math.min(from + PAGE_SIZE, fetches.length);
+            out.append(String.format("0x%03X  %-13s %12d %12d %12d%n", from, kind,
+                    sum(fetches, from, to), sum(reads, from, to), sum(writes, from, to)));
+        }
+
+        Integer[] addresses = new Integer[fetches.length];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = i;
+        }
+        Arrays.sort(addresses, (a, b) -> Long.compare(total(b), total(a)));
+        out.append(String.format("%nHottest addresses%n%-6s %12s %12s %12s%n", "Addr", "Fetches", "Reads", "Writes"));
+        for (int i = 0; i < Math.min(hottest, addresses.length) && total(addresses[i]) > 0; i++) {
+            int address = addresses[i];
+            out.append(String.format("0x%03X  %12d %12d %12d%n",
+                    address, fetches[address], reads[address], writes[address]));
+        }
+    }
+
+    /**
+     * Writes one line per accessed address: {@code address,fetches,reads,writes}.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("address,fetches,reads,writes\n");
+        for (int address = 0; address < fetches.length; address++) {
+            if (total(address) > 0) {
+                out.append(Integer.toString(address)).append(',')
+                        .append(Long.toString(fetches[address])).append(',')
+                        .append(Long.toString(reads[address])).append(',')
+                        .append(Long.toString(writes[address])).append('\n');
+            }
+        }
+    }
+
+    private long total(final int address) {
+        return fetches[address] + reads[address] + writes[address];
+    }
+
+    private static long sum(long[] counts, final int from, final int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += counts[i];
+        }
+        return sum;
+    }
+}
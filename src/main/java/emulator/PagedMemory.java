@@ -0,0 +1,157 @@
+package emulator;
+
+import util.Hashing;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Byte-addressed memory made of 256-byte pages that copies share until one of them writes.
+ * <p>
+ * {@link #copyInto(PagedMemory)} only copies the page table and counts the new holder on every page. A write to a
+ * page with more than one holder first replaces it with a private copy. Pages nobody holds any more are kept in a
+ * small pool and reused by the next copy-on-write, so a ring of recycled snapshots reaches a steady state without
+ * allocating. Each instance is used by one thread at a time, but pages may be shared across threads, so the
+ * holder counts are atomic.
+ */
+final class PagedMemory {
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int OFFSET_MASK = PAGE_SIZE - 1;
+
+    private static final class Page {
+        static final AtomicIntegerFieldUpdater<Page> HOLDERS =
+                AtomicIntegerFieldUpdater.newUpdater(Page.class, "holders");
+
+        final byte[] bytes = new byte[PAGE_SIZE];
+        // Copies that reference this page. Copies dropped without copyInto() are never subtracted, so this
+        // may be too high, which only costs an unneeded copy on the next write.
+        volatile int holders = 1;
+    }
+
+    private final Page[] pages;
+    // Pages released by this instance or given to it by copyInto(), reused before allocating new ones.
+    private final Page[] pool;
+    private int pooled;
+
+    PagedMemory(final int size) {
+        if (size <= 0 || size % PAGE_SIZE != 0) {
+            throw new IllegalArgumentException("Size must be a positive multiple of " + PAGE_SIZE + ": " + size);
+        }
+        this.pages = new Page[size >>> PAGE_SHIFT];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new Page();
+        }
+        this.pool = new Page[pages.length];
+    }
+
+    // Shares all pages of the source.
+    private PagedMemory(PagedMemory source) {
+        this.pages = source.pages.clone();
+        for (Page page : pages) {
+            Page.HOLDERS.incrementAndGet(page);
+        }
+        this.pool = new Page[pages.length];
+    }
+
+    int size() {
+        return pages.length << PAGE_SHIFT;
+    }
+
+    int read(final int address) {
+        return pages[address >>> PAGE_SHIFT].bytes[address & OFFSET_MASK] & 0xFF;
+    }
+
+    void write(final int address, final int value) {
+        writablePage(address >>> PAGE_SHIFT).bytes[address & OFFSET_MASK] = (byte) value;
+    }
+
+    private Page writablePage(final int index) {
+        Page page = pages[index];
+        if (page.holders == 1) {
+            return page;
+        }
+        Page copy = pooled > 0 ? pool[--pooled] : new Page();
+        copy.holders = 1;
+        System.arraycopy(page.bytes, 0, copy.bytes, 0, PAGE_SIZE);
+        pages[index] = copy;
+        release(page);
+        return copy;
+    }
+
+    private void release(Page page) {
+        if (Page.HOLDERS.decrementAndGet(page) == 0 && pooled < pool.length) {
+            pool[pooled++] = page;
+        }
+    }
+
+    /**
+     * Overwrites the whole memory with the low bytes of {@code image}, which must have {@link #size()} entries.
+     */
+    void load(int[] image) {
+        if (image.length != size()) {
+            throw new IllegalArgumentException("Expected " + size() + " bytes of memory, got " + image.length);
+        }
+        for (int index = 0; index < pages.length; index++) {
+            byte[] bytes = writablePage(index).bytes;
+            for (int offset = 0; offset < PAGE_SIZE; offset++) {
+                bytes[offset] = (byte) image[(index << PAGE_SHIFT) + offset];
+            }
+        }
+    }
+
+    /**
+     * Makes {@code target} share every page of this memory. Allocates nothing if the sizes match.
+     */
+    void copyInto(PagedMemory target) {
+        if (target.pages.length != pages.length) {
+            throw new IllegalArgumentException("Memory sizes differ: " + target.size() + " and " + size());
+        }
+        for (int i = 0; i < pages.length; i++) {
+            Page page = pages[i];
+            Page old = target.pages[i];
+            if (old == page) {
+                continue;
+            }
+            Page.HOLDERS.incrementAndGet(page);
+            target.pages[i] = page;
+            // Pool the page where the next write is likely: undo snapshots are copied from the emulator that
+            // keeps writing, resets copy into it. The writer is the one whose pool runs empty.
+            (target.pooled < pooled ? target : this).release(old);
+        }
+    }
+
+    PagedMemory copy() {
+        return new PagedMemory(this);
+    }
+
+    /**
+     * @return true if the page at {@code index} is currently shared with another copy.
+     */
+    boolean isShared(final int index) {
+        return pages[index].holders > 1;
+    }
+
+    /**
+     * Mixes every byte into {@code hash}, two at a time as one 64-bit value.
+     */
+    long hash(long hash) {
+        for (Page page : pages) {
+            byte[] bytes = page.bytes;
+            for (int i = 0; i < PAGE_SIZE; i += 2) {
+                hash = Hashing.mix(hash, (long) (bytes[i] & 0xFF) << 32 | (bytes[i + 1] & 0xFF));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return approximate heap size, each page split evenly between the copies that share it.
+     */
+    long estimateHeapBytes() {
+        long bytes = 16 + 16 + 4L * pages.length + 16 + 4L * pool.length;
+        for (Page page : pages) {
+            bytes += (16 + 16 + 16 + PAGE_SIZE) / Math.max(1, page.holders);
+        }
+        return bytes;
+    }
+}
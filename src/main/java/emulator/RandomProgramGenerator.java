@@ -0,0 +1,77 @@
+package emulator;
+
+import java.util.Random;
+
+/**
+ * Generates random but well-formed Chip-8 programs for differential testing.
+ * <p>
+ * Only instructions the interpreter supports are emitted. Subroutine calls are left out because random
+ * call/return sequences just overflow the stack, and I is only ever loaded with addresses that leave room
+ * for a full sprite or register dump behind it.
+ */
+public final class RandomProgramGenerator {
+    private static final int START_LOCATION = 0x200;
+    // Highest I value such that Dxyn (16 bytes) and Fx55/Fx65 (16 registers) stay inside memory.
+    private static final int MAX_SAFE_I = 0xFEF;
+    private static final int[] ALU_OPERATIONS = {0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7, 0xE};
+
+    private RandomProgramGenerator() {
+    }
+
+    /**
+     * @param seed         seed, equal seeds give equal programs.
+     * @param instructions number of instructions to generate.
+     * @return the program image, to be loaded at 0x200.
+     */
+    public static byte[] generate(final long seed, final int instructions) {
+        Random random = new Random(seed);
+        byte[] rom = new byte[instructions * 2];
+        for (int i = 0; i < instructions; i++) {
+            int opcode = randomInstruction(random, instructions);
+            rom[2 * i] = (byte) (opcode >> 8);
+            rom[2 * i + 1] = (byte) opcode;
+        }
+        return rom;
+    }
+
+    private static int randomInstruction(Random random, final int instructions) {
+        int x = random.nextInt(16);
+        int y = random.nextInt(16);
+        int kk = random.nextInt(256);
+        switch (random.nextInt(17)) {
+            case 0:
+                return 0x00E0;
+            case 1:
+                // Jump to an instruction inside the program.
+                return 0x1000 | (START_LOCATION + 2 * random.nextInt(instructions));
+            case 2:
+                return 0x3000 | x << 8 | kk;
+            case 3:
+                return 0x4000 | x << 8 | kk;
+            case 4:
+                return 0x5000 | x << 8 | y << 4;
+            case 5:
+                return 0x6000 | x << 8 | kk;
+            case 6:
+                return 0x7000 | x << 8 | kk;
+            case 7:
+                return 0x8000 | x << 8 | y << 4 | ALU_OPERATIONS[random.nextInt(ALU_OPERATIONS.length)];
+            case 8:
+                return 0x9000 | x << 8 | y << 4;
+            case 9:
+            case 10:
+                return 0xA000 | random.nextInt(MAX_SAFE_I + 1);
+            case 11:
+            case 12:
+                return 0xD000 | x << 8 | y << 4 | random.nextInt(16);
+            case 13:
+                return 0xE000 | x << 8 | (random.nextBoolean() ? 0x9E : 0xA1);
+            case 14:
+                return 0xF007 | x << 8;
+            case 15:
+                return 0xF033 | x << 8;
+            default:
+                return 0xF000 | x << 8 | (random.nextBoolean() ? 0x55 : 0x65);
+        }
+    }
+}
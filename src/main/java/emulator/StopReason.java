@@ -0,0 +1,17 @@
+package emulator;
+
+/**
+ * Why {@link Emulator#run(long)} or {@link Emulator#runFrame()} returned.
+ */
+public enum StopReason {
+    /** All instructions of the budget or frame were executed. */
+    BUDGET_EXHAUSTED,
+    /** The program executes Fx0A and no key is down. */
+    WAITING_FOR_KEY,
+    /** A breakpoint or watchpoint of the debugger was hit. */
+    BREAKPOINT,
+    /** The instruction at the PC is not supported, the PC still points to it. */
+    ILLEGAL_OPCODE,
+    /** The last instruction changed the display. */
+    DISPLAY_CHANGED
+}
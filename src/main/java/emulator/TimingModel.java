@@ -0,0 +1,115 @@
+package emulator;
+
+/**
+ * Execution cost per instruction, so a frame can be filled by time instead of by instruction count.
+ * <p>
+ * {@link #vip()} approximates the COSMAC VIP interpreter in machine cycles of its 1.76 MHz CDP1802 (eight
+ * clocks each). Every instruction pays the interpreter's fetch and decode, then its own work: register
+ * instructions are cheap, Dxyn grows with the sprite height and 00E0 clears 256 bytes of display memory one
+ * by one, longer than the program time of a whole frame. The numbers are estimates, close enough to keep
+ * draw-heavy and ALU-heavy programs at a plausible relative speed.
+ */
+public final class TimingModel {
+    // 1.76 MHz / 8 clocks per machine cycle / 60 Hz.
+    public static final int VIP_CYCLES_PER_FRAME = 3668;
+    // The display interrupt and DMA take about half of every frame on the VIP.
+    public static final int VIP_CYCLES_FOR_PROGRAM = VIP_CYCLES_PER_FRAME / 2;
+
+    private static final int VIP_DISPATCH = 100;
+    // Cost of the 16 instruction families without the dispatch, index is the top nibble.
+    private static final int[] VIP_FAMILY = {
+            10,  // 0nnn: 00EE, 00E0 is priced separately
+            12,  // 1nnn
+            26,  // 2nnn
+            10,  // 3xkk
+            10,  // 4xkk
+            14,  // 5xy0
+            6,   // 6xkk
+            10,  // 7xkk
+            44,  // 8xyn
+            14,  // 9xy0
+            12,  // Annn
+            22,  // Bnnn
+            36,  // Cxkk
+            26,  // Dxyn, plus VIP_DRAW_ROW per row
+            14,  // Ex9E, ExA1
+            16,  // Fx.., Fx33, Fx55 and Fx65 are priced separately
+    };
+    private static final int VIP_CLEAR = 3078;
+    private static final int VIP_DRAW_ROW = 68;
+    private static final int VIP_BCD = 84;
+    private static final int VIP_PER_REGISTER = 14;
+
+    private final int cyclesPerFrame;
+    private final int dispatch;
+    private final int[] family;
+    private final int clear;
+    private final int drawRow;
+    private final int bcd;
+    private final int perRegister;
+
+    private TimingModel(final int cyclesPerFrame, final int dispatch, int[] family, final int clear,
+                        final int drawRow, final int bcd, final int perRegister) {
+        if (cyclesPerFrame <= 0) {
+            throw new IllegalArgumentException("Cycles per frame must be positive: " + cyclesPerFrame);
+        }
+        this.cyclesPerFrame = cyclesPerFrame;
+        this.dispatch = dispatch;
+        this.family = family;
+        this.clear = clear;
+        this.drawRow = drawRow;
+        this.bcd = bcd;
+        this.perRegister = perRegister;
+    }
+
+    /**
+     * COSMAC VIP-like costs with the cycles left for the program in one frame.
+     */
+    public static TimingModel vip() {
+        return vip(VIP_CYCLES_FOR_PROGRAM);
+    }
+
+    /**
+     * COSMAC VIP-like costs with a different clock, e.g. twice {@link #VIP_CYCLES_FOR_PROGRAM} for double speed.
+     */
+    public static TimingModel vip(final int cyclesPerFrame) {
+        return new TimingModel(cyclesPerFrame, VIP_DISPATCH, VIP_FAMILY, VIP_CLEAR, VIP_DRAW_ROW, VIP_BCD,
+                VIP_PER_REGISTER);
+    }
+
+    /**
+     * Every instruction costs one cycle, like the plain instruction count.
+     */
+    public static TimingModel uniform(final int instructionsPerFrame) {
+        return new TimingModel(instructionsPerFrame, 1, new int[16], 0, 0, 0, 0);
+    }
+
+    public int getCyclesPerFrame() {
+        return cyclesPerFrame;
+    }
+
+    /**
+     * @return the cost of executing the given 16-bit instruction.
+     */
+    public int cost(final int opcode) {
+        int top = opcode >>> 12;
+        int kk = opcode & 0xFF;
+        int x = (opcode >> 8) & 0xF;
+        switch (top) {
+            case 0x0:
+                return dispatch + (opcode == 0x00E0 ? clear : family[0]);
+            case 0xD:
+                return dispatch + family[0xD] + drawRow * (opcode & 0xF);
+            case 0xF:
+                if (kk == 0x33) {
+                    return dispatch + bcd;
+                }
+                if (kk == 0x55 || kk == 0x65) {
+                    return dispatch + family[0xF] + perRegister * (x + 1);
+                }
+                return dispatch + family[0xF];
+            default:
+                return dispatch + family[top];
+        }
+    }
+}
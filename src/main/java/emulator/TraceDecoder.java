@@ -0,0 +1,72 @@
+package emulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Offline decoder for trace files written by {@link TraceRecorder}. Prints one line per instruction,
+ * oldest first:
+ * <pre>
+ * cycle     PC     opcode  mnemonic          I       changed register
+ * 1234      0x0204 0x7102  ADD V1, 0x02      0x0300  V1=0x08
+ * </pre>
+ * Usage: {@code TraceDecoder <trace file>}
+ */
+public class TraceDecoder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TraceDecoder <trace file>");
+            System.exit(1);
+        }
+        decode(Path.of(args[0]), System.out);
+    }
+
+    public static void decode(Path file, PrintStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < TraceRecorder.HEADER_SIZE || buffer.getInt(0) != TraceRecorder.MAGIC) {
+            throw new IOException("Not a trace file: " + file);
+        }
+        if (buffer.getInt(4) != TraceRecorder.VERSION || buffer.getInt(8) != TraceRecorder.RECORD_SIZE) {
+            throw new IOException("Unsupported trace version " + buffer.getInt(4) + " in " + file);
+        }
+        long capacity = buffer.getLong(TraceRecorder.CAPACITY_OFFSET);
+        long written = buffer.getLong(TraceRecorder.WRITTEN_OFFSET);
+
+        StringBuilder line = new StringBuilder(64);
+        for (long sequence = Math.max(0, written - capacity); sequence < written; sequence++) {
+            int offset = TraceRecorder.HEADER_SIZE + (int) (sequence % capacity) * TraceRecorder.RECORD_SIZE;
+            line.setLength(0);
+            appendRecord(line, buffer, offset);
+            out.println(line);
+        }
+    }
+
+    static void appendRecord(StringBuilder line, ByteBuffer buffer, final int offset) {
+        long cycle = buffer.getLong(offset);
+        int pc = buffer.getShort(offset + 8) & 0xFFFF;
+        int opcode = buffer.getShort(offset + 10) & 0xFFFF;
+        int i = buffer.getShort(offset + 12) & 0xFFFF;
+        int register = buffer.get(offset + 14) & 0xFF;
+        int value = buffer.get(offset + 15) & 0xFF;
+
+        pad(line.append(cycle), 10);
+        pad(Disassembler.hex(line, pc, 4), 17);
+        pad(Disassembler.hex(line, opcode, 4), 25);
+        pad(Disassembler.append(line, opcode), 43);
+        Disassembler.hex(line, i, 4);
+        if (register != TraceRecorder.NO_REGISTER) {
+            Disassembler.hex(line.append("  V").append(Integer.toHexString(register).toUpperCase()).append('='),
+                    value, 2);
+        }
+    }
+
+    private static void pad(StringBuilder sb, final int column) {
+        do {
+            sb.append(' ');
+        } while (sb.length() < column);
+    }
+}
@@ -0,0 +1,78 @@
+package emulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records every executed instruction as a fixed-width binary record into a memory-mapped ring file.
+ * Once the ring is full the oldest records are overwritten. Recording does not allocate; the OS writes
+ * the mapped pages back in the background.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * header  (32 bytes): magic "C8TR", version, record size, reserved, capacity (long), records written (long)
+ * record  (16 bytes): cycle (long), PC (short), opcode (short), I (short), changed register (byte), its value (byte)
+ * </pre>
+ * The changed register is {@link #NO_REGISTER} for instructions that do not write a V register.
+ * Use {@link TraceDecoder} to turn a trace into text.
+ */
+public class TraceRecorder implements Closeable {
+    static final int MAGIC = 0x43385452; // "C8TR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 16;
+    static final int CAPACITY_OFFSET = 16;
+    static final int WRITTEN_OFFSET = 24;
+    public static final int NO_REGISTER = 0xFF;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private long written;
+
+    /**
+     * @param file     trace file, created or overwritten.
+     * @param capacity number of records kept before the oldest ones get overwritten.
+     */
+    public TraceRecorder(Path file, final int capacity) throws IOException {
+        if (capacity <= 0 || (long) capacity * RECORD_SIZE + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putLong(CAPACITY_OFFSET, capacity);
+        buffer.putLong(WRITTEN_OFFSET, 0);
+    }
+
+    public void record(final long cycle, final int pc, final int opcode, final int i,
+                       final int changedRegister, final int value) {
+        int offset = HEADER_SIZE + (int) (written % capacity) * RECORD_SIZE;
+        buffer.putLong(offset, cycle);
+        buffer.putShort(offset + 8, (short) pc);
+        buffer.putShort(offset + 10, (short) opcode);
+        buffer.putShort(offset + 12, (short) i);
+        buffer.put(offset + 14, (byte) changedRegister);
+        buffer.put(offset + 15, (byte) value);
+        written++;
+        buffer.putLong(WRITTEN_OFFSET, written);
+    }
+
+    public long getRecordsWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
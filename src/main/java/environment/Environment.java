@@ -0,0 +1,89 @@
+package environment;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+
+/**
+ * Reinforcement learning environment around one {@link Chip8Emulator}.
+ * <p>
+ * An action is a 16-bit key mask that is held down while the emulator runs a fixed number of frames. The
+ * observation is the display packed into one long per row, see {@link Chip8Emulator#packDisplay(long[], int)}.
+ * Resetting copies a pristine machine over the running one instead of creating a new emulator, so neither
+ * {@link #reset(long)} nor {@link #step(int)} allocates.
+ */
+public class Environment {
+    public static final int OBSERVATION_LENGTH = Chip8Emulator.DISPLAY_HEIGHT;
+
+    // The machine right after loading the ROM, never run.
+    private final Chip8Emulator initial;
+    private final Chip8Emulator emulator;
+    private final int framesPerStep;
+    private boolean done;
+
+    /**
+     * @param framesPerStep frames run per action, the frame skip of the environment.
+     */
+    public Environment(byte[] rom, final int framesPerStep) {
+        if (framesPerStep <= 0) {
+            throw new IllegalArgumentException("Frames per step must be positive: " + framesPerStep);
+        }
+        this.initial = new Chip8Emulator();
+        initial.loadRom(rom);
+        this.emulator = initial.fork();
+        this.framesPerStep = framesPerStep;
+    }
+
+    /**
+     * Restarts the program with no key down. The seed drives the random numbers of Cxkk.
+     */
+    public void reset(final long seed) {
+        initial.copyInto(emulator);
+        emulator.getKeypad().setMask(0);
+        emulator.setRandomSeed(seed);
+        done = false;
+    }
+
+    /**
+     * Holds down the keys of {@code actionMask} for the configured number of frames. The episode is done when
+     * the program hits an unsupported instruction or a breakpoint; further steps do nothing until the next reset.
+     *
+     * @return why the last frame ended.
+     */
+    public StopReason step(final int actionMask) {
+        if (done) {
+            return StopReason.ILLEGAL_OPCODE;
+        }
+        emulator.getKeypad().setMask(actionMask);
+        StopReason reason = StopReason.BUDGET_EXHAUSTED;
+        for (int frame = 0; frame < framesPerStep; frame++) {
+            reason = emulator.runFrame();
+            if (reason == StopReason.ILLEGAL_OPCODE || reason == StopReason.BREAKPOINT) {
+                done = true;
+                break;
+            }
+        }
+        return reason;
+    }
+
+    /**
+     * Writes the observation to {@code observation[start]} to {@code observation[start + OBSERVATION_LENGTH - 1]}.
+     */
+    public void observe(long[] observation, final int start) {
+        emulator.packDisplay(observation, start);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public int getFramesPerStep() {
+        return framesPerStep;
+    }
+
+    /**
+     * The emulator is driven by this environment, only read from it, e.g. to compute a reward.
+     */
+    public Chip8Emulator getEmulator() {
+        return emulator;
+    }
+}
@@ -0,0 +1,80 @@
+package environment;
+
+import util.Hashing;
+
+/**
+ * Steps many independent {@link Environment}s of the same ROM with one call.
+ * <p>
+ * Actions, observations and done flags are passed in arrays the caller allocates once: environment {@code i}
+ * reads {@code actions[i]}, writes its observation to {@code observations[i * OBSERVATION_LENGTH]} onwards
+ * and its done flag to {@code done[i]}. Done environments are reset automatically in the next step with a
+ * seed derived from the base seed and an episode counter, so the batch keeps running without allocating.
+ */
+public class VectorEnvironment {
+    private final Environment[] environments;
+    private final long[] episodes;
+    private long seed;
+
+    public VectorEnvironment(byte[] rom, final int count, final int framesPerStep) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Need at least one environment: " + count);
+        }
+        this.environments = new Environment[count];
+        this.episodes = new long[count];
+        for (int i = 0; i < count; i++) {
+            environments[i] = new Environment(rom, framesPerStep);
+        }
+    }
+
+    public int size() {
+        return environments.length;
+    }
+
+    /**
+     * Resets every environment and writes the first observations.
+     */
+    public void reset(final long seed, long[] observations) {
+        checkLength(observations.length, environments.length * Environment.OBSERVATION_LENGTH);
+        this.seed = seed;
+        for (int i = 0; i < environments.length; i++) {
+            episodes[i] = 0;
+            environments[i].reset(seedOf(i));
+            environments[i].observe(observations, i * Environment.OBSERVATION_LENGTH);
+        }
+    }
+
+    /**
+     * Steps every environment once. An environment that was done after the previous step starts a new episode
+     * first, so its observation is the one after the first step of that episode.
+     */
+    public void step(int[] actions, long[] observations, boolean[] done) {
+        checkLength(actions.length, environments.length);
+        checkLength(observations.length, environments.length * Environment.OBSERVATION_LENGTH);
+        checkLength(done.length, environments.length);
+        for (int i = 0; i < environments.length; i++) {
+            Environment environment = environments[i];
+            if (environment.isDone()) {
+                episodes[i]++;
+                environment.reset(seedOf(i));
+            }
+            environment.step(actions[i]);
+            environment.observe(observations, i * Environment.OBSERVATION_LENGTH);
+            done[i] = environment.isDone();
+        }
+    }
+
+    public Environment get(final int index) {
+        return environments[index];
+    }
+
+    // Distinct for every environment and episode, and the same for every run with the same base seed.
+    private long seedOf(final int index) {
+        return Hashing.finish(Hashing.mix(Hashing.mix(seed, index), episodes[index]));
+    }
+
+    private static void checkLength(final int actual, final int expected) {
+        if (actual < expected) {
+            throw new IllegalArgumentException("Array too short: " + actual + " < " + expected);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package event;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+
+/**
+ * One event of an {@link EventBus}. Instances are preallocated slots of the bus queue and are reused, so
+ * publishing does not allocate; a listener must not keep a reference after its call returns.
+ * <p>
+ * The display is packed into one long per row like {@link Chip8Emulator#packDisplay(long[])}. It and the
+ * dirty region are only set if {@link EventType#hasDisplay()} is true for the type.
+ */
+public final class EmulatorEvent {
+    private EventType type;
+    private long cycles;
+    private long frame;
+    private int programCounter;
+    private int opcode;
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+    private StopReason stopReason;
+    private final long[] rows = new long[Chip8Emulator.DISPLAY_HEIGHT];
+
+    EmulatorEvent() {
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    /**
+     * @return instructions executed by the emulator when the event was published, -1 if not known.
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return frames run by the emulator when the event was published, see {@link Chip8Emulator#getFrames()},
+     * -1 if not known.
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return the program counter after the event, -1 if not known.
+     */
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    /**
+     * @return the instruction at the program counter after the event, -1 if not known.
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * @return the display, one long per row with bit 63 as the leftmost pixel. Do not modify.
+     */
+    public long[] getRows() {
+        return rows;
+    }
+
+    /**
+     * @return true if the pixel at (x, y) is set in {@link #getRows()}.
+     */
+    public boolean isPixelSet(final int x, final int y) {
+        return (rows[y] << x) < 0;
+    }
+
+    // Dirty region in pixels, the whole display for frame and restore events.
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return why execution stopped, only set for {@link EventType#HALTED}.
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    void set(EventType type, Chip8Emulator emulator) {
+        this.type = type;
+        this.stopReason = null;
+        if (emulator == null) {
+            this.cycles = -1;
+            this.frame = -1;
+            this.programCounter = -1;
+            this.opcode = -1;
+        } else {
+            this.cycles = emulator.getCycles();
+            this.frame = emulator.getFrames();
+            this.programCounter = emulator.getProgramCounter();
+            this.opcode = emulator.getPCInstruction();
+            if (type.hasDisplay()) {
+                emulator.packDisplay(rows);
+            }
+        }
+        setRegion(0, 0, Chip8Emulator.DISPLAY_WIDTH, Chip8Emulator.DISPLAY_HEIGHT);
+    }
+
+    void setRegion(final int x, final int y, final int width, final int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    void setStopReason(StopReason stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    /**
+     * Takes over the state of a newer event of the same type and unites the dirty regions.
+     */
+    void merge(EmulatorEvent newer) {
+        int right = Math.max(x + width, newer.x + newer.width);
+        int bottom = Math.max(y + height, newer.y + newer.height);
+        x = Math.min(x, newer.x);
+        y = Math.min(y, newer.y);
+        width = right - x;
+        height = bottom - y;
+        cycles = newer.cycles;
+        frame = newer.frame;
+        programCounter = newer.programCounter;
+        opcode = newer.opcode;
+        System.arraycopy(newer.rows, 0, rows, 0, rows.length);
+    }
+
+    void copyFrom(EmulatorEvent other) {
+        type = other.type;
+        cycles = other.cycles;
+        frame = other.frame;
+        programCounter = other.programCounter;
+        opcode = other.opcode;
+        stopReason = other.stopReason;
+        setRegion(other.x, other.y, other.width, other.height);
+        System.arraycopy(other.rows, 0, rows, 0, rows.length);
+    }
+}
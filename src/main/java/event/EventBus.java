@@ -0,0 +1,340 @@
+package event;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers {@link EmulatorEvent}s from the emulation thread to listeners on a separate dispatcher thread.
+ * <p>
+ * Events are written into a bounded ring of preallocated slots, so publishing copies at most one packed
+ * display and never allocates. The dispatcher takes one event at a time and calls the listeners outside
+ * the lock, so a slow listener only delays other listeners; what happens to the emulation thread when the
+ * queue is full is decided by the {@link OverflowPolicy}.
+ */
+public class EventBus implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final class Subscription {
+        final EventListener listener;
+        final int types;
+
+        Subscription(EventListener listener, int types) {
+            this.listener = listener;
+            this.types = types;
+        }
+    }
+
+    private final EmulatorEvent[] slots;
+    private final OverflowPolicy policy;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Thread dispatcher;
+
+    // Guarded by this.
+    private final EmulatorEvent incoming = new EmulatorEvent();
+    private int head;
+    private int size;
+    private boolean dispatching;
+    private boolean dispatcherWaiting;
+    private boolean closed;
+
+    private volatile long published;
+    private volatile long delivered;
+    private volatile long dropped;
+    private volatile long coalesced;
+
+    public EventBus() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.COALESCE);
+    }
+
+    public EventBus(final int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.slots = new EmulatorEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new EmulatorEvent();
+        }
+        this.policy = policy;
+        this.dispatcher = new Thread(this::dispatch, "event-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Subscribes to all event types.
+     */
+    public void subscribe(EventListener listener) {
+        subscriptions.add(new Subscription(listener, -1));
+    }
+
+    public void subscribe(EventListener listener, EventType type, EventType... more) {
+        int types = type.bit();
+        for (EventType other : more) {
+            types |= other.bit();
+        }
+        subscriptions.add(new Subscription(listener, types));
+    }
+
+    public void unsubscribe(EventListener listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+
+    public void publishFrameReady(Chip8Emulator emulator) {
+        synchronized (this) {
+            if (!reserve(EventType.FRAME_READY)) {
+                return;
+            }
+            incoming.set(EventType.FRAME_READY, emulator);
+            enqueue();
+        }
+    }
+
+    /**
+     * Publishes a frame that did not come from a local emulator, e.g. one received over the network.
+     */
+    public void publishFrameReady(long[] rows) {
+        synchronized (this) {
+            if (!reserve(EventType.FRAME_READY)) {
+                return;
+            }
+            incoming.set(EventType.FRAME_READY, null);
+            System.arraycopy(rows, 0, incoming.getRows(), 0, Chip8Emulator.DISPLAY_HEIGHT);
+            enqueue();
+        }
+    }
+
+    /**
+     * @param x      left edge of the changed pixels.
+     * @param width  number of changed columns, the region must lie within the display.
+     */
+    public void publishDisplayChanged(Chip8Emulator emulator, final int x, final int y,
+                                      final int width, final int height) {
+        synchronized (this) {
+            if (!reserve(EventType.DISPLAY_CHANGED)) {
+                return;
+            }
+            incoming.set(EventType.DISPLAY_CHANGED, emulator);
+            incoming.setRegion(x, y, width, height);
+            enqueue();
+        }
+    }
+
+    public void publishSound(Chip8Emulator emulator, final boolean on) {
+        synchronized (this) {
+            if (!reserve(on ? EventType.SOUND_ON : EventType.SOUND_OFF)) {
+                return;
+            }
+            incoming.set(on ? EventType.SOUND_ON : EventType.SOUND_OFF, emulator);
+            enqueue();
+        }
+    }
+
+    public void publishHalted(Chip8Emulator emulator, StopReason reason) {
+        synchronized (this) {
+            if (!reserve(EventType.HALTED)) {
+                return;
+            }
+            incoming.set(EventType.HALTED, emulator);
+            incoming.setStopReason(reason);
+            enqueue();
+        }
+    }
+
+    public void publishStateRestored(Chip8Emulator emulator) {
+        synchronized (this) {
+            if (!reserve(EventType.STATE_RESTORED)) {
+                return;
+            }
+            incoming.set(EventType.STATE_RESTORED, emulator);
+            enqueue();
+        }
+    }
+
+    /**
+     * Called with the lock held before the incoming event is filled. With {@link OverflowPolicy#BLOCK}, and with
+     * {@link OverflowPolicy#COALESCE} for a control event while only control events are pending, waits for a free
+     * slot first, so no other publisher can overwrite the incoming event while this one waits.
+     *
+     * @return false if the event must not be published because the bus is closed or the wait was interrupted.
+     */
+    private boolean reserve(EventType type) {
+        while (size == slots.length && !closed && (policy == OverflowPolicy.BLOCK
+                || policy == OverflowPolicy.COALESCE && !isFrame(type) && oldestFrame() < 0)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped++;
+                return false;
+            }
+        }
+        return !closed;
+    }
+
+    // Called with the lock held, moves the incoming event into the queue.
+    private void enqueue() {
+        published++;
+        EventType type = incoming.getType();
+        if (policy == OverflowPolicy.COALESCE && isFrame(type)) {
+            for (int i = size - 1; i >= 0; i--) {
+                EmulatorEvent pending = slots[(head + i) % slots.length];
+                if (pending.getType() == type) {
+                    // Moved behind the events published since, so the listeners still see them in order.
+                    pending.merge(incoming);
+                    moveToTail(i);
+                    coalesced++;
+                    return;
+                }
+            }
+        }
+        if (size == slots.length) {
+            if (policy == OverflowPolicy.COALESCE) {
+                // Control events are never lost, a frame or display event makes room instead.
+                int frame = oldestFrame();
+                if (frame < 0) {
+                    // Only reached by a frame or display event, reserve() made control events wait.
+                    dropped++;
+                    return;
+                }
+                moveToTail(frame);
+            } else {
+                head = (head + 1) % slots.length;
+            }
+            size--;
+            dropped++;
+        }
+        slots[(head + size) % slots.length].copyFrom(incoming);
+        size++;
+        if (dispatcherWaiting) {
+            notifyAll();
+        }
+    }
+
+    private static boolean isFrame(EventType type) {
+        return type == EventType.FRAME_READY || type == EventType.DISPLAY_CHANGED;
+    }
+
+    // Called with the lock held. Position in the queue of the oldest frame or display event, -1 if there is none.
+    private int oldestFrame() {
+        for (int i = 0; i < size; i++) {
+            if (isFrame(slots[(head + i) % slots.length].getType())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Called with the lock held. Rotates the slot at the given queue position to the tail, keeping the others in order.
+    private void moveToTail(final int index) {
+        EmulatorEvent moved = slots[(head + index) % slots.length];
+        for (int i = index; i < size - 1; i++) {
+            slots[(head + i) % slots.length] = slots[(head + i + 1) % slots.length];
+        }
+        slots[(head + size - 1) % slots.length] = moved;
+    }
+
+    private void dispatch() {
+        EmulatorEvent current = new EmulatorEvent();
+        while (true) {
+            synchronized (this) {
+                dispatching = false;
+                while (size == 0 && !closed) {
+                    dispatcherWaiting = true;
+                    // Wakes up awaitIdle().
+                    notifyAll();
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                    dispatcherWaiting = false;
+                }
+                if (closed) {
+                    notifyAll();
+                    return;
+                }
+                current.copyFrom(slots[head]);
+                head = (head + 1) % slots.length;
+                size--;
+                dispatching = true;
+                // Wakes up a publisher blocked on a full queue.
+                notifyAll();
+            }
+            deliver(current);
+        }
+    }
+
+    private void deliver(EmulatorEvent event) {
+        int bit = event.getType().bit();
+        for (int i = 0; i < subscriptions.size(); i++) {
+            Subscription subscription = subscriptions.get(i);
+            if ((subscription.types & bit) == 0) {
+                continue;
+            }
+            try {
+                subscription.listener.onEvent(event);
+            } catch (RuntimeException e) {
+                // A broken listener must not stop the delivery to the others.
+                e.printStackTrace();
+            }
+        }
+        delivered++;
+    }
+
+    /**
+     * Waits until every published event has been delivered or dropped.
+     *
+     * @return false if that did not happen within the timeout.
+     */
+    public synchronized boolean awaitIdle(final long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while ((size > 0 || dispatching) && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return events lost because the queue was full.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return events merged into a pending event of the same type.
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Stops the dispatcher. Pending events are discarded and later ones are ignored.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+}
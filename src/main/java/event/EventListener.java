@@ -0,0 +1,12 @@
+package event;
+
+/**
+ * Receives events from an {@link EventBus} on its dispatcher thread, never on the emulation thread.
+ */
+@FunctionalInterface
+public interface EventListener {
+    /**
+     * @param event only valid during the call, it is reused for the next event. Copy what has to be kept.
+     */
+    public void onEvent(EmulatorEvent event);
+}
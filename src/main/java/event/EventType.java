@@ -0,0 +1,30 @@
+package event;
+
+/**
+ * Kinds of {@link EmulatorEvent}s published on an {@link EventBus}.
+ */
+public enum EventType {
+    /** A frame of the 60 Hz loop, or a batch of manually stepped instructions, has finished. Carries the display. */
+    FRAME_READY,
+    /** An instruction drew to or cleared the display. Carries the display and the dirty region. */
+    DISPLAY_CHANGED,
+    /** The sound timer was set to a non-zero value, the buzzer starts. */
+    SOUND_ON,
+    /** The sound timer ran out or was set to zero, the buzzer stops. */
+    SOUND_OFF,
+    /** Execution stopped at an unsupported instruction or a breakpoint, see {@link EmulatorEvent#getStopReason()}. */
+    HALTED,
+    /** A previous state was restored, e.g. by undo. Carries the display. */
+    STATE_RESTORED;
+
+    /**
+     * @return true if events of this type carry a copy of the display.
+     */
+    public boolean hasDisplay() {
+        return this == FRAME_READY || this == DISPLAY_CHANGED || this == STATE_RESTORED;
+    }
+
+    int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,18 @@
+package event;
+
+/**
+ * What an {@link EventBus} does when an event is published while its queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * A frame or display event is merged into the pending event of the same type, which moves to the end of the
+     * queue; the newer display wins and dirty regions are united. If the queue is full, the oldest frame or display
+     * event is dropped. Control events (sound, halt, state restored) are never dropped, with only those pending a
+     * control event waits like {@link #BLOCK} and a frame or display event is dropped.
+     */
+    COALESCE,
+    /** The oldest pending event is dropped. */
+    DROP_OLDEST,
+    /** The publishing thread waits until the dispatcher made room. A slow listener slows down the emulator. */
+    BLOCK
+}
@@ -0,0 +1,287 @@
+package explorer;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Explores the states a program can reach by branching on key input.
+ * <p>
+ * From every state, each configured key mask is held down for a number of frames, giving one successor per
+ * mask. Successors are expanded in parallel on a {@link ForkJoinPool} and deduplicated by a 128-bit hash of
+ * the complete machine state in a {@link StateSet}, so no state is expanded twice. Breadth-first search runs
+ * level by level; depth-first search forks one task per successor.
+ */
+public class StateExplorer {
+
+    public enum Order {
+        BREADTH_FIRST, DEPTH_FIRST
+    }
+
+    /**
+     * Outcome of an exploration. If a goal was given and reached, {@link #getPath()} holds the key masks
+     * that lead there from the start state.
+     */
+    public static class Result {
+        private final int states;
+        private final int maxDepth;
+        private final boolean truncated;
+        private final List<Integer> path;
+
+        Result(int states, int maxDepth, boolean truncated, List<Integer> path) {
+            this.states = states;
+            this.maxDepth = maxDepth;
+            this.truncated = truncated;
+            this.path = path;
+        }
+
+        /**
+         * @return number of distinct states found, including the start state.
+         */
+        public int getStates() {
+            return states;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * @return true if the state limit stopped the exploration before it was complete.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * @return key masks from the start state to the goal, null if no goal was reached.
+         */
+        public List<Integer> getPath() {
+            return path;
+        }
+    }
+
+    // One explored state; the emulator is dropped once the node has been expanded.
+    private static final class Node {
+        final Node parent;
+        final int keyMask;
+        final int depth;
+        Chip8Emulator emulator;
+
+        Node(Node parent, int keyMask, int depth, Chip8Emulator emulator) {
+            this.parent = parent;
+            this.keyMask = keyMask;
+            this.depth = depth;
+            this.emulator = emulator;
+        }
+
+        List<Integer> path() {
+            List<Integer> path = new ArrayList<>();
+            for (Node node = this; node.parent != null; node = node.parent) {
+                path.add(node.keyMask);
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
+
+    private static final long SEED_HIGH = 0x5EED_0001L;
+    private static final long SEED_LOW = 0x5EED_0002L;
+    // Below this many nodes a BFS level is expanded by a single task.
+    private static final int SPLIT_THRESHOLD = 8;
+
+    private final int[] keyMasks;
+    private final int framesPerStep;
+    private final int maxDepth;
+    private final int maxStates;
+    private final Order order;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param keyMasks      key masks to branch on, e.g. {@link #singleKeys()}.
+     * @param framesPerStep frames to run with a mask held down.
+     * @param maxDepth      number of steps after which a branch is not expanded further.
+     * @param maxStates     memory limit, the exploration stops after this many distinct states.
+     */
+    public StateExplorer(int[] keyMasks, final int framesPerStep, final int maxDepth, final int maxStates,
+                         Order order, ForkJoinPool pool) {
+        this.keyMasks = keyMasks.clone();
+        this.framesPerStep = framesPerStep;
+        this.maxDepth = maxDepth;
+        this.maxStates = maxStates;
+        this.order = order;
+        this.pool = pool;
+    }
+
+    /**
+     * @return no key plus every single key, 17 masks.
+     */
+    public static int[] singleKeys() {
+        int[] masks = new int[17];
+        for (int key = 0; key < 16; key++) {
+            masks[key + 1] = 1 << key;
+        }
+        return masks;
+    }
+
+    public Result explore(Chip8Emulator start) {
+        return explore(start, null);
+    }
+
+    /**
+     * Explores from a fork of {@code start}, the given emulator itself is not modified.
+     *
+     * @param goal optional, the exploration stops at the first state it accepts. Called concurrently.
+     */
+    public Result explore(Chip8Emulator start, Predicate<Chip8Emulator> goal) {
+        StateSet seen = new StateSet(maxStates);
+        Chip8Emulator root = start.fork();
+        seen.add(root.stateHash(SEED_HIGH), root.stateHash(SEED_LOW));
+        Search search = new Search(seen, goal);
+        Node rootNode = new Node(null, 0, 0, root);
+        if (goal != null && goal.test(root)) {
+            return new Result(1, 0, false, rootNode.path());
+        }
+
+        if (order == Order.BREADTH_FIRST) {
+            List<Node> level = List.of(rootNode);
+            while (!level.isEmpty() && search.running()) {
+                ConcurrentLinkedQueue<Node> next = new ConcurrentLinkedQueue<>();
+                pool.invoke(new ExpandLevel(search, level, 0, level.size(), next));
+                level = new ArrayList<>(next);
+            }
+        } else {
+            pool.invoke(new ExpandDepthFirst(search, rootNode));
+        }
+        Node found = search.found.get();
+        return new Result(seen.size(), search.deepest.get(), search.truncated, found == null ? null : found.path());
+    }
+
+    private final class Search {
+        final StateSet seen;
+        final Predicate<Chip8Emulator> goal;
+        final AtomicReference<Node> found = new AtomicReference<>();
+        final AtomicInteger deepest = new AtomicInteger();
+        volatile boolean truncated;
+
+        Search(StateSet seen, Predicate<Chip8Emulator> goal) {
+            this.seen = seen;
+            this.goal = goal;
+        }
+
+        boolean running() {
+            return !truncated && found.get() == null;
+        }
+
+        /**
+         * Creates all new successors of a node and passes them to {@code sink}.
+         */
+        void expand(Node node, List<Node> sink) {
+            Chip8Emulator parent = node.emulator;
+            node.emulator = null;
+            if (node.depth >= maxDepth) {
+                return;
+            }
+            for (int keyMask : keyMasks) {
+                if (!running()) {
+                    return;
+                }
+                Chip8Emulator child = parent.fork();
+                child.getKeypad().setMask(keyMask);
+                if (!runStep(child)) {
+                    continue;
+                }
+                boolean added;
+                try {
+                    added = seen.add(child.stateHash(SEED_HIGH), child.stateHash(SEED_LOW));
+                } catch (IllegalStateException e) {
+                    truncated = true;
+                    return;
+                }
+                if (!added) {
+                    continue;
+                }
+                Node childNode = new Node(node, keyMask, node.depth + 1, child);
+                deepest.accumulateAndGet(childNode.depth, Math::max);
+                if (goal != null && goal.test(child)) {
+                    found.compareAndSet(null, childNode);
+                    return;
+                }
+                sink.add(childNode);
+            }
+        }
+
+        /**
+         * @return false if the program stopped at an unsupported instruction, such a state is a dead end.
+         */
+        private boolean runStep(Chip8Emulator emulator) {
+            for (int frame = 0; frame < framesPerStep; frame++) {
+                if (emulator.runFrame() == StopReason.ILLEGAL_OPCODE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final class ExpandLevel extends RecursiveAction {
+        private final Search search;
+        private final List<Node> level;
+        private final int from;
+        private final int to;
+        private final ConcurrentLinkedQueue<Node> next;
+
+        ExpandLevel(Search search, List<Node> level, int from, int to, ConcurrentLinkedQueue<Node> next) {
+            this.search = search;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+            this.next = next;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ExpandLevel(search, level, from, middle, next),
+                        new ExpandLevel(search, level, middle, to, next));
+                return;
+            }
+            List<Node> successors = new ArrayList<>();
+            for (int i = from; i < to && search.running(); i++) {
+                search.expand(level.get(i), successors);
+            }
+            next.addAll(successors);
+        }
+    }
+
+    private final class ExpandDepthFirst extends RecursiveAction {
+        private final Search search;
+        private final Node node;
+
+        ExpandDepthFirst(Search search, Node node) {
+            this.search = search;
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            List<Node> successors = new ArrayList<>(keyMasks.length);
+            search.expand(node, successors);
+            List<ExpandDepthFirst> tasks = new ArrayList<>(successors.size());
+            for (Node successor : successors) {
+                tasks.add(new ExpandDepthFirst(search, successor));
+            }
+            invokeAll(tasks);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package explorer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent set of 128-bit state fingerprints with open addressing and linear probing.
+ * <p>
+ * Both halves live next to each other in one {@link AtomicLongArray}. A slot is claimed by a CAS on the
+ * low half and published by writing the high half; readers that find a claimed but unpublished slot wait
+ * for it. Zero marks an empty slot, so fingerprints with a zero half are remapped. The table never grows:
+ * its capacity is the memory limit of an exploration.
+ */
+public class StateSet {
+    private static final double MAX_LOAD = 0.75;
+
+    private final AtomicLongArray table;
+    private final int mask;
+    private final int limit;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param maxStates number of fingerprints the set has to hold, uses 32 bytes per state or less.
+     */
+    public StateSet(final int maxStates) {
+        if (maxStates <= 0 || maxStates > (1 << 28)) {
+            throw new IllegalArgumentException("Invalid state limit: " + maxStates);
+        }
+        int slots = Math.max(2, Integer.highestOneBit((int) Math.ceil(maxStates / MAX_LOAD) - 1) << 1);
+        this.table = new AtomicLongArray(2 * slots);
+        this.mask = slots - 1;
+        this.limit = maxStates;
+    }
+
+    /**
+     * @return true if the fingerprint was not in the set and has been added, false if it was already there.
+     * @throws IllegalStateException if the set is full. Under contention a few more states than the limit may fit.
+     */
+    public boolean add(long high, long low) {
+        if (low == 0) {
+            low = 1;
+        }
+        if (high == 0) {
+            high = 1;
+        }
+        int index = (int) (low ^ (low >>> 32) ^ high) & mask;
+        while (true) {
+            int slot = 2 * index;
+            long claimed = table.get(slot);
+            if (claimed == 0) {
+                if (size.get() >= limit) {
+                    throw new IllegalStateException("State set is full: " + limit + " states");
+                }
+                if (table.compareAndSet(slot, 0, low)) {
+                    table.set(slot + 1, high);
+                    size.incrementAndGet();
+                    return true;
+                }
+                claimed = table.get(slot);
+            }
+            if (claimed == low) {
+                long published;
+                while ((published = table.get(slot + 1)) == 0) {
+                    Thread.onSpinWait();
+                }
+                if (published == high) {
+                    return false;
+                }
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,19 @@
+package host;
+
+import emulator.Chip8Emulator;
+
+/**
+ * Receives finished frames from a {@link SpeedGovernor}.
+ */
+public interface FrameRenderer {
+    /**
+     * Called on the emulation thread after a frame. Must copy what it needs (e.g. with
+     * {@link Chip8Emulator#packDisplay(long[])}) and return without waiting for the paint.
+     */
+    public void render(Chip8Emulator emulator);
+
+    /**
+     * @return true while the last rendered frame has not been painted yet. The governor skips frames meanwhile.
+     */
+    public boolean isBusy();
+}
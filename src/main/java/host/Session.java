@@ -0,0 +1,123 @@
+package host;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * One emulator run by a {@link SessionHost}. Ordered by the deadline of its next frame, so carrier threads
+ * always serve the session that is due first.
+ */
+public class Session implements Delayed {
+
+    public enum State {
+        /** Scheduled for its next frame. */
+        RUNNING,
+        /** Waiting for a key with both timers expired; rescheduled by the next key press. */
+        PARKED,
+        /** Stopped at a breakpoint or an unsupported instruction. */
+        HALTED,
+        /** Removed from the host. */
+        STOPPED
+    }
+
+    private final int id;
+    private final Chip8Emulator emulator;
+    // The host's clock in nanoseconds.
+    private final LongSupplier clock;
+    final AtomicReference<State> state = new AtomicReference<>(State.RUNNING);
+    // Registered with the keypad by the host while the session is added.
+    Runnable pressListener;
+
+    // Written by the carrier thread currently running the session, read by anyone.
+    volatile long deadline;
+    private volatile long frames;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+    private volatile long lateFrames;
+    private volatile StopReason lastStopReason;
+
+    Session(final int id, Chip8Emulator emulator, LongSupplier clock) {
+        this.id = id;
+        this.emulator = emulator;
+        this.clock = clock;
+        this.deadline = clock.getAsLong();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * The emulator is owned by the host's carrier threads while the session is running;
+     * only read from it or feed input through its keypad.
+     */
+    public Chip8Emulator getEmulator() {
+        return emulator;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return how late the last frame started relative to its deadline.
+     */
+    public double getLagMillis() {
+        return lastLagNanos / 1_000_000.0;
+    }
+
+    public double getMaxLagMillis() {
+        return maxLagNanos / 1_000_000.0;
+    }
+
+    /**
+     * @return frames that started more than one frame period after their deadline.
+     */
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    public StopReason getLastStopReason() {
+        return lastStopReason;
+    }
+
+    void recordFrame(final long lagNanos, final long framePeriodNanos, StopReason reason) {
+        frames++;
+        lastLagNanos = lagNanos;
+        if (lagNanos > maxLagNanos) {
+            maxLagNanos = lagNanos;
+        }
+        if (lagNanos > framePeriodNanos) {
+            lateFrames++;
+        }
+        lastStopReason = reason;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(deadline - clock.getAsLong(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        if (other instanceof Session) {
+            return Long.compare(deadline, ((Session) other).deadline);
+        }
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Session %d: %s, %d frames, lag %.2fms (max %.2fms), %d late",
+                id, getState(), frames, getLagMillis(), getMaxLagMillis(), lateFrames);
+    }
+}
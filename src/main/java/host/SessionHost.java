@@ -0,0 +1,191 @@
+package host;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs many independent emulator sessions in real time on a small, fixed pool of carrier threads.
+ * <p>
+ * Every session is due for one frame per 60 Hz period. Sessions wait in a {@link DelayQueue} ordered by the
+ * deadline of their next frame; a free carrier takes the session that is due first, runs exactly one frame
+ * and puts it back with the next deadline. No session can run ahead of the others, and an overloaded host
+ * shows up as growing lag on every session instead of starving some of them.
+ * <p>
+ * Sessions whose program waits for a key with both timers expired are parked and cost nothing until
+ * a key is pressed on their keypad.
+ */
+public class SessionHost {
+    public static final long FRAME_NANOS = 1_000_000_000L / 60;
+    // A session that fell further behind than this skips ahead instead of running frames back to back.
+    private static final long MAX_CATCH_UP_NANOS = 5 * FRAME_NANOS;
+
+    private final DelayQueue<Session> due = new DelayQueue<>();
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final Thread[] carriers;
+    private final LongSupplier clock;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public SessionHost(final int carrierThreads) {
+        this(requireCarriers(carrierThreads), System::nanoTime);
+    }
+
+    /**
+     * A host on the given nanosecond clock. Without carrier threads nothing runs by itself; the caller runs
+     * the due frames with {@link #runDue()}, which lets tests step the host frame by frame.
+     */
+    SessionHost(final int carrierThreads, LongSupplier clock) {
+        this.clock = clock;
+        this.carriers = new Thread[carrierThreads];
+        for (int i = 0; i < carrierThreads; i++) {
+            carriers[i] = new Thread(this::carry, "session-carrier-" + i);
+            carriers[i].setDaemon(true);
+            carriers[i].start();
+        }
+    }
+
+    private static int requireCarriers(final int carrierThreads) {
+        if (carrierThreads <= 0) {
+            throw new IllegalArgumentException("Need at least one carrier thread: " + carrierThreads);
+        }
+        return carrierThreads;
+    }
+
+    /**
+     * Starts running the emulator in real time. It must not be run by anyone else afterwards.
+     */
+    public Session addSession(Chip8Emulator emulator) {
+        Session session = new Session(nextId.getAndIncrement(), emulator, clock);
+        // Copies of the emulator share its keypad, so other sessions may listen to it as well.
+        session.pressListener = () -> unpark(session);
+        emulator.getKeypad().addPressListener(session.pressListener);
+        sessions.add(session);
+        due.offer(session);
+        return session;
+    }
+
+    /**
+     * Stops the session. A frame already running on a carrier finishes first.
+     */
+    public void removeSession(Session session) {
+        session.state.set(Session.State.STOPPED);
+        session.getEmulator().getKeypad().removePressListener(session.pressListener);
+        due.remove(session);
+        sessions.remove(session);
+    }
+
+    /**
+     * Continues a session halted at a breakpoint.
+     */
+    public void resume(Session session) {
+        if (session.state.compareAndSet(Session.State.HALTED, Session.State.RUNNING)) {
+            session.deadline = clock.getAsLong();
+            due.offer(session);
+        }
+    }
+
+    public List<Session> getSessions() {
+        return List.copyOf(sessions);
+    }
+
+    /**
+     * @return the largest current lag over all running sessions, in milliseconds.
+     */
+    public double getMaxLagMillis() {
+        double max = 0;
+        for (Session session : sessions) {
+            if (session.getState() == Session.State.RUNNING) {
+                max = Math.max(max, session.getLagMillis());
+            }
+        }
+        return max;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        for (Thread carrier : carriers) {
+            carrier.interrupt();
+        }
+    }
+
+    private void carry() {
+        while (!shutdown) {
+            Session session;
+            try {
+                session = due.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (session.getState() == Session.State.RUNNING) {
+                runFrame(session);
+            }
+        }
+    }
+
+    /**
+     * Runs every frame that is due by the clock's current time on the calling thread.
+     *
+     * @return number of frames run.
+     */
+    int runDue() {
+        int frames = 0;
+        Session session;
+        while ((session = due.poll()) != null) {
+            if (session.getState() == Session.State.RUNNING) {
+                runFrame(session);
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    private void runFrame(Session session) {
+        long start = clock.getAsLong();
+        Chip8Emulator emulator = session.getEmulator();
+        StopReason reason = emulator.runFrame();
+        session.recordFrame(start - session.deadline, FRAME_NANOS, reason);
+
+        switch (reason) {
+            case ILLEGAL_OPCODE:
+            case BREAKPOINT:
+                session.state.compareAndSet(Session.State.RUNNING, Session.State.HALTED);
+                return;
+            case WAITING_FOR_KEY:
+                if (emulator.getDelayTimer() == 0 && emulator.getSoundTimer() == 0) {
+                    park(session);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        long next = session.deadline + FRAME_NANOS;
+        session.deadline = Math.max(next, start - MAX_CATCH_UP_NANOS);
+        if (session.getState() == Session.State.RUNNING) {
+            due.offer(session);
+        }
+    }
+
+    private void park(Session session) {
+        if (!session.state.compareAndSet(Session.State.RUNNING, Session.State.PARKED)) {
+            return;
+        }
+        // A key pressed between the frame and parking would otherwise be missed.
+        if (session.getEmulator().getKeypad().getMask() != 0) {
+            unpark(session);
+        }
+    }
+
+    private void unpark(Session session) {
+        if (session.state.compareAndSet(Session.State.PARKED, Session.State.RUNNING)) {
+            session.deadline = clock.getAsLong();
+            due.offer(session);
+        }
+    }
+}
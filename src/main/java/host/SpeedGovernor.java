@@ -0,0 +1,204 @@
+package host;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs one emulator in real time at a target instruction rate and keeps the 60 Hz timers on the wall clock.
+ * <p>
+ * Emulation has priority over drawing. If a frame took too long, the governor runs the frames that are due
+ * back to back; the renderer only gets the last of them, and not even that one if it is still busy painting
+ * the previous frame. Under load the visible frame rate drops first while the game keeps its speed. Only when
+ * emulation itself cannot keep up for more than {@link #MAX_CATCH_UP_FRAMES} frames does the governor give
+ * up on those frames, and the game runs slower.
+ * <p>
+ * Other threads must not touch the emulator while the governor runs; {@link #execute(Runnable)} runs a task
+ * on the emulation thread between two frames instead, also while paused or halted.
+ */
+public class SpeedGovernor implements Executor {
+    public static final long FRAME_NANOS = SessionHost.FRAME_NANOS;
+    public static final int MAX_CATCH_UP_FRAMES = 5;
+
+    private final Chip8Emulator emulator;
+    private final FrameRenderer renderer;
+    private final int targetIps;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean paused;
+    private volatile boolean stopped;
+    private volatile StopReason haltReason;
+
+    private volatile long emulatedFrames;
+    private volatile long renderedFrames;
+    private volatile long skippedRenderFrames;
+    private volatile long lostFrames;
+
+    // Frame clock, only used by the thread calling tick(). Restarted at the first round and after a pause or halt,
+    // so frames missed meanwhile are not caught up.
+    private long next;
+    private long frame;
+    private boolean resync = true;
+
+    /**
+     * @param targetIps instructions per second, spread over the frames as evenly as possible. Ignored if the
+     *                  emulator has a {@link emulator.TimingModel}, which then fills the frames by cost.
+     * @param renderer  may be null to run without a display.
+     */
+    public SpeedGovernor(Chip8Emulator emulator, final int targetIps, FrameRenderer renderer) {
+        if (targetIps < 60) {
+            throw new IllegalArgumentException("Need at least one instruction per frame: " + targetIps);
+        }
+        this.emulator = emulator;
+        this.renderer = renderer;
+        this.targetIps = targetIps;
+        this.thread = new Thread(this::govern, "speed-governor");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the emulation thread and waits for the current frame to finish.
+     */
+    public void stop() throws InterruptedException {
+        stopped = true;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        LockSupport.unpark(thread);
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Continues after {@link #pause()} or a halt. Frames missed meanwhile are not caught up.
+     */
+    public void resume() {
+        paused = false;
+        haltReason = null;
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return why emulation halted (an unsupported instruction or a breakpoint), null while running.
+     */
+    public StopReason getHaltReason() {
+        return haltReason;
+    }
+
+    public int getTargetIps() {
+        return targetIps;
+    }
+
+    public long getEmulatedFrames() {
+        return emulatedFrames;
+    }
+
+    public long getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    /**
+     * @return emulated frames that were not drawn because the renderer was busy or frames were caught up.
+     */
+    public long getSkippedRenderFrames() {
+        return skippedRenderFrames;
+    }
+
+    /**
+     * @return frames that were not emulated at all because emulation fell too far behind, the game slowed down.
+     */
+    public long getLostFrames() {
+        return lostFrames;
+    }
+
+    private void govern() {
+        while (!stopped) {
+            long wait = tick(System.nanoTime());
+            if (wait < 0) {
+                LockSupport.park(this);
+            } else if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    /**
+     * One round of the emulation thread at time {@code now}: runs the queued tasks, then the frames due by then.
+     * The thread calls this in a loop; tests call it with their own clock instead of starting the thread.
+     *
+     * @return nanoseconds until the next frame is due, 0 to go again right away, or -1 while paused or halted.
+     */
+    long tick(final long now) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            // A failing task must not end emulation.
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        if (paused || haltReason != null) {
+            resync = true;
+            return -1;
+        }
+        if (resync) {
+            next = now;
+            resync = false;
+        }
+        if (now < next) {
+            return next - now;
+        }
+        long due = (now - next) / FRAME_NANOS + 1;
+        if (due > MAX_CATCH_UP_FRAMES) {
+            lostFrames += due - MAX_CATCH_UP_FRAMES;
+            next += (due - MAX_CATCH_UP_FRAMES) * FRAME_NANOS;
+            due = MAX_CATCH_UP_FRAMES;
+        }
+        for (long i = 0; i < due; i++) {
+            // Spread the rate evenly, e.g. 700 IPS gives frames of 11 and 12 instructions.
+            int budget = (int) ((frame + 1) * targetIps / 60 - frame * targetIps / 60);
+            frame++;
+            emulator.setInstructionsPerFrame(budget);
+            StopReason reason = emulator.runFrame();
+            emulatedFrames++;
+            next += FRAME_NANOS;
+            if (reason == StopReason.ILLEGAL_OPCODE || reason == StopReason.BREAKPOINT) {
+                haltReason = reason;
+                due = i + 1;
+                break;
+            }
+        }
+        // Only the newest of the frames run in this round is drawn.
+        skippedRenderFrames += due - 1;
+        if (renderer != null) {
+            if (renderer.isBusy()) {
+                skippedRenderFrames++;
+            } else {
+                renderer.render(emulator);
+                renderedFrames++;
+            }
+        }
+        // The frames took time, so the caller has to look at the clock again.
+        return 0;
+    }
+}
@@ -0,0 +1,57 @@
+package monitor;
+
+/**
+ * Management interface of one emulator and its controller, see {@link EmulatorMonitor}.
+ * <p>
+ * Frame counters and pause/resume need a {@link host.SpeedGovernor}; without one the counters stay 0 and
+ * the operations fail, since manual stepping has no frame loop to pause.
+ */
+public interface EmulatorMXBean {
+
+    public long getCycles();
+
+    /**
+     * @return instructions per second since the previous call, measured over at least a second.
+     */
+    public double getCurrentIps();
+
+    public int getProgramCounter();
+
+    public int getDelayTimer();
+
+    public int getSoundTimer();
+
+    public long getFramesEmulated();
+
+    public long getFramesRendered();
+
+    /**
+     * @return frames emulated but not drawn plus frames not emulated because emulation fell behind.
+     */
+    public long getFramesDropped();
+
+    public long getEventsPublished();
+
+    public long getEventsDelivered();
+
+    public long getEventsDropped();
+
+    public long getEventsCoalesced();
+
+    public int getHistoryDepth();
+
+    public int getHistoryLimit();
+
+    public long getHistoryBytes();
+
+    public boolean isPaused();
+
+    public void pause();
+
+    public void resume();
+
+    /**
+     * Drops all but the newest {@code keep} undo snapshots.
+     */
+    public void trimHistory(int keep);
+}
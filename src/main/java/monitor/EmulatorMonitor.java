@@ -0,0 +1,218 @@
+package monitor;
+
+import controller.EmulatorController;
+import emulator.Chip8Emulator;
+import event.EventBus;
+import host.SpeedGovernor;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exposes the live metrics of one emulator over JMX, registered as {@code chip8:type=Emulator,name=...}.
+ * <p>
+ * Attributes are read from the JMX thread without synchronisation, so a value may be a frame old. The undo
+ * history must not be walked while it changes, so its size in bytes is computed on the executor that owns the
+ * controller, e.g. the Swing event dispatch thread, and each read returns the value of the previous computation.
+ * Trimming the history runs on that executor as well.
+ */
+public class EmulatorMonitor implements EmulatorMXBean, AutoCloseable {
+    public static final String DOMAIN = "chip8";
+    private static final long MIN_IPS_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final EmulatorController controller;
+    private final SpeedGovernor governor;
+    private final Executor controllerThread;
+    private ObjectName name;
+
+    // Guarded by this, the sample getCurrentIps() measures from.
+    private long sampleCycles;
+    private long sampleNanos;
+    private double ips;
+
+    // Last result of estimateHistoryBytes() on the controller's thread, and whether a new one is queued.
+    private volatile long historyBytes;
+    private final AtomicBoolean historyBytesQueued = new AtomicBoolean();
+
+    /**
+     * @param governor         may be null if the emulator is only stepped by hand.
+     * @param controllerThread runs {@link #trimHistory(int)} and measures the history.
+     */
+    public EmulatorMonitor(EmulatorController controller, SpeedGovernor governor, Executor controllerThread) {
+        this.controller = controller;
+        this.governor = governor;
+        this.controllerThread = controllerThread;
+        this.sampleCycles = controller.getEmulator().getCycles();
+        this.sampleNanos = System.nanoTime();
+    }
+
+    /**
+     * Registers this monitor with the platform MBean server.
+     *
+     * @param instance distinguishes several emulators in one JVM.
+     */
+    public ObjectName register(String instance) throws JMException {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=Emulator,name=" + ObjectName.quote(instance));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("An emulator named " + instance + " is already registered", e);
+        }
+        this.name = objectName;
+        return objectName;
+    }
+
+    private Chip8Emulator emulator() {
+        return controller.getEmulator();
+    }
+
+    @Override
+    public long getCycles() {
+        return emulator().getCycles();
+    }
+
+    @Override
+    public synchronized double getCurrentIps() {
+        long now = System.nanoTime();
+        long cycles = getCycles();
+        long elapsed = now - sampleNanos;
+        // Polled more often than once a second, the last value is steadier than a short window.
+        if (elapsed >= MIN_IPS_INTERVAL_NANOS) {
+            // Undo can move the cycle count backwards.
+            ips = Math.max(0, cycles - sampleCycles) * 1e9 / elapsed;
+            sampleCycles = cycles;
+            sampleNanos = now;
+        }
+        return ips;
+    }
+
+    @Override
+    public int getProgramCounter() {
+        return emulator().getProgramCounter();
+    }
+
+    @Override
+    public int getDelayTimer() {
+        return emulator().getDelayTimer();
+    }
+
+    @Override
+    public int getSoundTimer() {
+        return emulator().getSoundTimer();
+    }
+
+    @Override
+    public long getFramesEmulated() {
+        return governor == null ? 0 : governor.getEmulatedFrames();
+    }
+
+    @Override
+    public long getFramesRendered() {
+        return governor == null ? 0 : governor.getRenderedFrames();
+    }
+
+    @Override
+    public long getFramesDropped() {
+        return governor == null ? 0 : governor.getSkippedRenderFrames() + governor.getLostFrames();
+    }
+
+    @Override
+    public long getEventsPublished() {
+        EventBus bus = emulator().getEventBus();
+        return bus == null ? 0 : bus.getPublished();
+    }
+
+    @Override
+    public long getEventsDelivered() {
+        EventBus bus = emulator().getEventBus();
+        return bus == null ? 0 : bus.getDelivered();
+    }
+
+    @Override
+    public long getEventsDropped() {
+        EventBus bus = emulator().getEventBus();
+        return bus == null ? 0 : bus.getDropped();
+    }
+
+    @Override
+    public long getEventsCoalesced() {
+        EventBus bus = emulator().getEventBus();
+        return bus == null ? 0 : bus.getCoalesced();
+    }
+
+    @Override
+    public int getHistoryDepth() {
+        return controller.getHistoryDepth();
+    }
+
+    @Override
+    public int getHistoryLimit() {
+        return controller.getHistoryLimit();
+    }
+
+    @Override
+    public long getHistoryBytes() {
+        if (historyBytesQueued.compareAndSet(false, true)) {
+            controllerThread.execute(() -> {
+                historyBytesQueued.set(false);
+                historyBytes = controller.estimateHistoryBytes();
+            });
+        }
+        return historyBytes;
+    }
+
+    @Override
+    public boolean isPaused() {
+        return governor != null && governor.isPaused();
+    }
+
+    @Override
+    public void pause() {
+        requireGovernor().pause();
+    }
+
+    @Override
+    public void resume() {
+        requireGovernor().resume();
+    }
+
+    private SpeedGovernor requireGovernor() {
+        if (governor == null) {
+            throw new UnsupportedOperationException("The emulator is stepped by hand and has no frame loop");
+        }
+        return governor;
+    }
+
+    @Override
+    public void trimHistory(final int keep) {
+        if (keep < 0) {
+            throw new IllegalArgumentException("Cannot keep a negative number of snapshots: " + keep);
+        }
+        controllerThread.execute(() -> controller.trimHistory(keep));
+    }
+
+    /**
+     * Unregisters this monitor, if it was registered.
+     */
+    @Override
+    public void close() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // Already unregistered from outside.
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        name = null;
+    }
+}
@@ -1,36 +1,261 @@
 package org.example;
 
 import emulator.Chip8Emulator;
+import emulator.TimingModel;
+import emulator.TraceRecorder;
+import emulator.MemoryHeatMap;
 import controller.EmulatorController;
+import controller.RomWatcher;
+import event.EventBus;
+import event.EventType;
+import host.FrameRenderer;
+import host.SpeedGovernor;
+import monitor.EmulatorMonitor;
+import record.SessionRecorder;
+import server.FrameStreamServer;
 import view.GUI;
+import view.Upscaler;
+
+import javax.management.JMException;
+import javax.swing.SwingUtilities;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
 
 public class Main {
+    // One million instructions, 16 MB of trace.
+    private static final int TRACE_CAPACITY = 1 << 20;
+
     public static void main(String[] args) {
         // Read ch8 file
         //File file = new File("src/main/resources/1-chip8-logo.ch8");
         //File file = new File("src/main/resources/2-ibm-logo.ch8");
         File file = new File("src/main/resources/3-corax+.ch8");
-        int[] rom = readRom(file);
-        int[] memory = new int[4096];
+        Chip8Emulator cpu;
+        if ("xochip".equalsIgnoreCase(option(args, "--mode"))) {
+            // 64 KB memory, so the ROM is not limited to the classic 3.5 KB.
+            cpu = Chip8Emulator.xoChip();
+            try {
+                cpu.loadRom(Files.readAllBytes(file.toPath()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else {
+            int[] rom = readRom(file);
+            int[] memory = new int[4096];
+
+            for(int i = 0; i<rom.length; i++) {
+                memory[0x200 + i] = rom[i];
+            }
 
-        for(int i = 0; i<rom.length; i++) {
-            memory[0x200 + i] = rom[i];
+            cpu = new Chip8Emulator();
+            cpu.setMemory(memory);
         }
+        EventBus events = new EventBus();
+        cpu.setEventBus(events);
 
-        Chip8Emulator cpu = new Chip8Emulator();
-        cpu.setMemory(memory);
+        // Hot reload of the ROM file, null if off.
+        RomWatcher.Mode watch = null;
+        // Listen address of a headless session, null for the GUI.
+        InetSocketAddress serveAddress = null;
+        // Real-time speed, 0 keeps the GUI in manual stepping mode.
+        int ips = 0;
+        SessionRecorder recorder = null;
+        Upscaler.Filter filter = Upscaler.Filter.NEAREST;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--mode":
+                    // Chosen before the emulator is created, see above.
+                    break;
+                case "--serve":
+                    // [host:]port, a bare port only accepts viewers on this machine.
+                    serveAddress = FrameStreamServer.parseAddress(args[i + 1]);
+                    break;
+                case "--heatmap":
+                    // Memory access report written on exit, CSV if the name ends with .csv.
+                    MemoryHeatMap heatMap = new MemoryHeatMap(cpu.getMemorySize());
+                    cpu.setMemoryHeatMap(heatMap);
+                    Path report = Path.of(args[i + 1]);
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> writeHeatMap(heatMap, report)));
+                    break;
+                case "--watch":
+                    // Patch changes of the ROM file into the running program: resume, reset or restore.
+                    watch = RomWatcher.Mode.valueOf(args[i + 1].toUpperCase());
+                    break;
+                case "--timing":
+                    // "vip" fills frames by COSMAC VIP-like instruction costs instead of instruction count.
+                    if (args[i + 1].equals("vip")) {
+                        cpu.setTimingModel(TimingModel.vip());
+                    } else {
+                        System.err.println("Unknown timing model: " + args[i + 1]);
+                    }
+                    break;
+                case "--filter":
+                    // Pixel-art upscaling of the display: nearest, scale2x, epx or scale3x.
+                    filter = Upscaler.Filter.valueOf(args[i + 1].toUpperCase());
+                    break;
+                case "--ips":
+                    ips = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--trace":
+                    // Binary instruction trace, turn it into text with emulator.TraceDecoder.
+                    try {
+                        cpu.setTraceRecorder(new TraceRecorder(Path.of(args[i + 1]), TRACE_CAPACITY));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    break;
+                case "--record":
+                    // An animated GIF if the name ends with .gif, otherwise a directory of PNG frames.
+                    try {
+                        Path target = Path.of(args[i + 1]);
+                        recorder = new SessionRecorder(target.toString().endsWith(".gif")
+                                ? SessionRecorder.Format.GIF : SessionRecorder.Format.PNG, target);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+            }
+        }
+
+        // Headless session, watch it with StreamViewer.
+        if (serveAddress != null) {
+            serve(cpu, recorder, serveAddress, ips > 0 ? ips : Chip8Emulator.DEFAULT_INSTRUCTIONS_PER_FRAME * 60);
+            return;
+        }
+
+        if (recorder != null) {
+            SessionRecorder frames = recorder;
+            // Coalesced events carry the newest frame number, so merged frames only lengthen the previous image.
+            events.subscribe(event -> frames.capture(event.getRows(), event.getFrame()), EventType.FRAME_READY);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> closeRecorder(frames)));
+        }
 
         // View constructed;
         EmulatorController controller = new EmulatorController(cpu);
-        GUI gui = new GUI(controller);
-        cpu.addObserver(gui);
+        // The governor's thread owns the emulator, so stepping and undo by hand are only offered without it.
+        GUI gui = new GUI(controller, ips <= 0);
+        Upscaler.Filter scaling = filter;
+        SwingUtilities.invokeLater(() -> gui.setFilter(scaling));
+        Executor emulationThread;
+        SpeedGovernor governor = null;
+        if (ips > 0) {
+            // The governor decides which frames are drawn, the GUI only listens for the other events.
+            events.subscribe(gui, EventType.HALTED, EventType.STATE_RESTORED);
+            SpeedGovernor running = new SpeedGovernor(cpu, ips, gui);
+            running.start();
+            // A reload also continues a program that halted on broken code.
+            emulationThread = task -> {
+                running.execute(task);
+                running.resume();
+            };
+            governor = running;
+        } else {
+            events.subscribe(gui);
+            emulationThread = SwingUtilities::invokeLater;
+        }
+        // The control panel steps and undoes on the event dispatch thread, with a governor it does neither.
+        registerMonitor(new EmulatorMonitor(controller, governor, SwingUtilities::invokeLater), file.getName());
+        if (watch != null) {
+            try {
+                byte[] loaded = Files.readAllBytes(file.toPath());
+                new RomWatcher(file.toPath(), loaded, emulationThread, controller::getEmulator, watch);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+    /**
+     * @return the value following {@code name} in the options, null if it is not given.
+     */
+    private static String option(String[] args, String name) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static void serve(Chip8Emulator cpu, SessionRecorder recorder, InetSocketAddress address, final int ips) {
+        try {
+            FrameStreamServer server = new FrameStreamServer(address);
+            System.out.println("Streaming frames on " + address.getAddress().getHostAddress()
+                    + " port " + server.getPort());
+            SpeedGovernor governor = new SpeedGovernor(cpu, ips, new FrameRenderer() {
+                @Override
+                public void render(Chip8Emulator emulator) {
+                    server.publishFrame(emulator);
+                    if (recorder != null) {
+                        recorder.capture(emulator);
+                    }
+                }
+
+                @Override
+                public boolean isBusy() {
+                    return false;
+                }
+            });
+            governor.start();
+            // Headless sessions have no undo, the controller only serves the monitor.
+            registerMonitor(new EmulatorMonitor(new EmulatorController(cpu), governor, Runnable::run),
+                    "port " + server.getPort());
+            while (governor.getHaltReason() == null) {
+                Thread.sleep(100);
+            }
+            governor.stop();
+            System.err.println("Stopped (" + governor.getHaltReason() + ") at " + cpu.getPCInstr()
+                    + ", " + governor.getLostFrames() + " frames lost");
+            if (recorder != null) {
+                closeRecorder(recorder);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Visible in JConsole or VisualVM under chip8/Emulator.
+    private static void registerMonitor(EmulatorMonitor monitor, String name) {
+        try {
+            monitor.register(name);
+        } catch (JMException | IllegalStateException e) {
+            e.printStackTrace();
+        }
     }
 
+    private static void writeHeatMap(MemoryHeatMap heatMap, Path report) {
+        try (Writer out = Files.newBufferedWriter(report)) {
+            if (report.toString().endsWith(".csv")) {
+                heatMap.writeCsv(out);
+            } else {
+                heatMap.writeReport(out, 32);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void closeRecorder(SessionRecorder recorder) {
+        try {
+            recorder.close();
+            System.err.println("Recorded " + recorder.getCaptured() + " frames, " + recorder.getDropped() + " dropped");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
     private static int[] readRom(File file) {
         byte[] rom = new byte[4096-0x200];
@@ -0,0 +1,22 @@
+package org.example;
+
+import event.EventBus;
+import server.FrameStreamClient;
+import view.GUI;
+
+import java.io.IOException;
+
+/**
+ * Shows the frames of a headless session started with {@code Main --serve [host:]port}.
+ */
+public class StreamViewer {
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 1 ? args[0] : "localhost";
+        int port = Integer.parseInt(args[args.length - 1]);
+
+        FrameStreamClient client = new FrameStreamClient(host, port);
+        EventBus events = new EventBus();
+        events.subscribe(new GUI());
+        client.setEventBus(events);
+    }
+}
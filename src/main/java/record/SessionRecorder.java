@@ -0,0 +1,335 @@
+package record;
+
+import emulator.Chip8Emulator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records the display of a session as an animated GIF or as numbered PNG files.
+ * <p>
+ * {@link #capture(Chip8Emulator)} is called on the emulation thread after a frame, not necessarily after every
+ * one: the number of the frame, not the number of calls, decides how long the previous image is shown. It packs
+ * the display into one of a fixed set of reusable buffers and hands it to an encoder thread through a bounded
+ * queue; it never waits and never allocates. A frame equal to the previous one is skipped (in a GIF the
+ * previous frame is simply shown longer), and if the encoder falls so far behind that no buffer is free, the
+ * frame is dropped instead of stalling emulation. Only {@code javax.imageio} is used, so recording works
+ * in headless mode.
+ */
+public class SessionRecorder implements Closeable {
+
+    public enum Format {
+        /** One animated GIF file, frame delays follow the 60 Hz frame clock. */
+        GIF,
+        /** One PNG per changed frame in a directory, named after the frame number, e.g. frame-000042.png. */
+        PNG
+    }
+
+    public static final int DEFAULT_BUFFERS = 32;
+    public static final int DEFAULT_SCALE = 8;
+
+    private static final int ROWS = Chip8Emulator.DISPLAY_HEIGHT;
+    // A buffer holds the packed rows followed by the number of the frame.
+    private static final int FRAME_INDEX = ROWS;
+    private static final long[] END = new long[0];
+
+    private final Format format;
+    private final Path target;
+    private final int scale;
+    private final BlockingQueue<long[]> free;
+    private final BlockingQueue<long[]> pending;
+    private final Thread encoder;
+
+    // Only used by the capturing thread.
+    private final long[] last = new long[ROWS];
+    private boolean hasLast;
+    // Number of the frame after the last capture, read by the encoder for the display time of the last image.
+    private volatile long nextFrame;
+
+    // Only used by the encoder thread, set once the end marker was taken.
+    private boolean ended;
+
+    private volatile long captured;
+    private volatile long duplicates;
+    private volatile long dropped;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    public SessionRecorder(Format format, Path target) throws IOException {
+        this(format, target, DEFAULT_SCALE, DEFAULT_BUFFERS);
+    }
+
+    /**
+     * @param target  the GIF file, or the directory for PNG files, which is created if missing.
+     * @param scale   size of one Chip-8 pixel in the image.
+     * @param buffers number of frames that may wait for the encoder.
+     */
+    public SessionRecorder(Format format, Path target, final int scale, final int buffers) throws IOException {
+        if (scale <= 0 || buffers <= 0) {
+            throw new IllegalArgumentException("Scale and buffers must be positive: " + scale + ", " + buffers);
+        }
+        this.format = format;
+        this.target = target;
+        this.scale = scale;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        // One more slot than buffers, so the end marker always fits.
+        this.pending = new ArrayBlockingQueue<>(buffers + 1);
+        for (int i = 0; i < buffers; i++) {
+            free.add(new long[ROWS + 1]);
+        }
+        if (format == Format.PNG) {
+            Files.createDirectories(target);
+        }
+        this.encoder = new Thread(this::encode, "session-recorder");
+        this.encoder.setDaemon(true);
+        this.encoder.start();
+    }
+
+    /**
+     * Records the current display of the emulator, numbered by {@link Chip8Emulator#getFrames()}.
+     */
+    public void capture(Chip8Emulator emulator) {
+        long frame = emulator.getFrames();
+        long[] buffer = nextBuffer(frame);
+        if (buffer != null) {
+            emulator.packDisplay(buffer);
+            submit(buffer, frame);
+        }
+    }
+
+    /**
+     * Records an already packed display, e.g. the one carried by a frame-ready event.
+     *
+     * @param frame number of the frame, see {@link Chip8Emulator#getFrames()}. A number that does not advance,
+     *              like -1 for a frame of unknown origin or a repeated one while stepping by hand, counts as the
+     *              frame after the previous capture.
+     */
+    public void capture(long[] rows, final long frame) {
+        long[] buffer = nextBuffer(frame);
+        if (buffer != null) {
+            System.arraycopy(rows, 0, buffer, 0, ROWS);
+            submit(buffer, frame);
+        }
+    }
+
+    private long[] nextBuffer(final long frame) {
+        if (closed) {
+            return null;
+        }
+        long[] buffer = free.poll();
+        if (buffer == null) {
+            // The previous image stays on screen for the lost frame.
+            nextFrame = Math.max(frame, nextFrame) + 1;
+            dropped++;
+        }
+        return buffer;
+    }
+
+    private void submit(long[] buffer, final long frame) {
+        long number = Math.max(frame, nextFrame);
+        buffer[FRAME_INDEX] = number;
+        nextFrame = number + 1;
+        if (hasLast && Arrays.equals(buffer, 0, ROWS, last, 0, ROWS)) {
+            duplicates++;
+            free.add(buffer);
+            return;
+        }
+        System.arraycopy(buffer, 0, last, 0, ROWS);
+        hasLast = true;
+        captured++;
+        pending.add(buffer);
+    }
+
+    /**
+     * @return frames handed to the encoder.
+     */
+    public long getCaptured() {
+        return captured;
+    }
+
+    /**
+     * @return frames skipped because they equal the previous frame.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return frames lost because the encoder was too far behind.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Encodes the frames still queued and finishes the file. Frames captured concurrently may be lost.
+     *
+     * @throws IOException if encoding failed at any point.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            pending.add(END);
+            try {
+                encoder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while finishing " + target, e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void encode() {
+        BufferedImage image = createImage();
+        try {
+            if (format == Format.GIF) {
+                encodeGif(image);
+            } else {
+                encodePng(image);
+            }
+        } catch (IOException e) {
+            failure = e;
+            // Keep draining until closed, so capture() still finds free buffers.
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void encodePng(BufferedImage image) throws IOException, InterruptedException {
+        long[] buffer;
+        while ((buffer = take()) != END) {
+            draw(buffer, image);
+            Path file = target.resolve(String.format("frame-%06d.png", buffer[FRAME_INDEX]));
+            free.add(buffer);
+            if (!ImageIO.write(image, "png", file.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+    }
+
+    private void encodeGif(BufferedImage image) throws IOException, InterruptedException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(Files.newOutputStream(target))) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            // A frame is written once the next one arrives, only then its display time is known.
+            long[] previous = null;
+            boolean first = true;
+            long[] buffer;
+            while ((buffer = take()) != END) {
+                if (previous != null) {
+                    writeGifFrame(writer, image, previous, buffer[FRAME_INDEX], first);
+                    free.add(previous);
+                    first = false;
+                }
+                previous = buffer;
+            }
+            if (previous != null) {
+                writeGifFrame(writer, image, previous, nextFrame, first);
+                free.add(previous);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void writeGifFrame(ImageWriter writer, BufferedImage image, long[] buffer, final long endFrame,
+                               final boolean first) throws IOException {
+        draw(buffer, image);
+        // Delays are in 1/100 s; rounding both ends keeps the total in step with the 60 Hz clock.
+        long start = buffer[FRAME_INDEX];
+        int delay = (int) (Math.round(endFrame * 100 / 60.0) - Math.round(start * 100 / 60.0));
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+        String formatName = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(formatName);
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(Math.max(1, delay)));
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (first) {
+            // Loop forever.
+            IIOMetadataNode extensions = child(root, "ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0});
+            extensions.appendChild(loop);
+        }
+        metadata.setFromTree(formatName, root);
+        writer.writeToSequence(new IIOImage(image, null, metadata), null);
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+        for (int i = 0; i < parent.getLength(); i++) {
+            if (parent.item(i).getNodeName().equals(name)) {
+                return (IIOMetadataNode) parent.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        parent.appendChild(node);
+        return node;
+    }
+
+    // Two colours like the GUI: index 0 is an unset pixel (white), index 1 a set pixel (black).
+    private BufferedImage createImage() {
+        byte[] levels = {(byte) 0xFF, 0};
+        IndexColorModel colors = new IndexColorModel(1, 2, levels, levels, levels);
+        return new BufferedImage(Chip8Emulator.DISPLAY_WIDTH * scale, ROWS * scale,
+                BufferedImage.TYPE_BYTE_BINARY, colors);
+    }
+
+    private void draw(long[] rows, BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < ROWS * scale; y++) {
+            long row = rows[y / scale];
+            for (int x = 0; x < Chip8Emulator.DISPLAY_WIDTH * scale; x++) {
+                raster.setSample(x, y, 0, (int) (row >>> (63 - x / scale)) & 1);
+            }
+        }
+    }
+
+    private long[] take() throws InterruptedException {
+        long[] buffer = pending.take();
+        ended = buffer == END;
+        return buffer;
+    }
+
+    private void drain() {
+        if (ended) {
+            return;
+        }
+        try {
+            long[] buffer;
+            while ((buffer = take()) != END) {
+                free.add(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package server;
+
+import emulator.Chip8Emulator;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes packed frames (one long per row, see {@link Chip8Emulator#packDisplay(long[])}) as the XOR against the
+ * previous frame of the same stream, deflated. Unchanged rows XOR to zero, so a typical frame shrinks to a few bytes.
+ * <p>
+ * One codec belongs to one stream direction; it keeps the previous frame and reuses all of its buffers.
+ */
+public class FrameCodec {
+    static final int ROWS = Chip8Emulator.DISPLAY_HEIGHT;
+    static final int RAW_SIZE = ROWS * Long.BYTES;
+    // Deflate never grows 256 bytes by more than a handful of bytes, this leaves plenty of room.
+    static final int MAX_ENCODED_SIZE = RAW_SIZE * 2;
+
+    private final long[] previous = new long[ROWS];
+    private final byte[] raw = new byte[RAW_SIZE];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * @param frame packed frame to send.
+     * @param out   receives the encoded bytes, at least {@link #MAX_ENCODED_SIZE} long.
+     * @return number of bytes written to {@code out}.
+     */
+    public int encode(long[] frame, byte[] out) {
+        for (int row = 0; row < ROWS; row++) {
+            writeLong(raw, row * Long.BYTES, frame[row] ^ previous[row]);
+            previous[row] = frame[row];
+        }
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = deflater.deflate(out);
+        if (!deflater.finished()) {
+            throw new IllegalStateException("Encoded frame does not fit into " + out.length + " bytes");
+        }
+        return length;
+    }
+
+    /**
+     * Applies an encoded delta to the previous frame.
+     *
+     * @param in     encoded bytes.
+     * @param length number of valid bytes in {@code in}.
+     * @param frame  receives the rebuilt packed frame.
+     */
+    public void decode(byte[] in, int length, long[] frame) throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(in, 0, length);
+        int n = inflater.inflate(raw);
+        if (n != RAW_SIZE || !inflater.finished()) {
+            throw new DataFormatException("Corrupt frame, inflated " + n + " bytes");
+        }
+        for (int row = 0; row < ROWS; row++) {
+            previous[row] ^= readLong(raw, row * Long.BYTES);
+            frame[row] = previous[row];
+        }
+    }
+
+    /**
+     * Unpacks a packed frame into the one-short-per-pixel layout of {@link Chip8Emulator#getDisplay()}.
+     */
+    public static void unpack(long[] frame, short[] display) {
+        final int width = Chip8Emulator.DISPLAY_WIDTH;
+        for (int y = 0; y < ROWS; y++) {
+            long row = frame[y];
+            for (int x = 0; x < width; x++) {
+                display[y * width + x] = (short) ((row >>> (width - 1 - x)) & 1);
+            }
+        }
+    }
+
+    public void close() {
+        deflater.end();
+        inflater.end();
+    }
+
+    private static void writeLong(byte[] buffer, int offset, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            buffer[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static long readLong(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (buffer[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
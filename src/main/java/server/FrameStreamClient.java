@@ -0,0 +1,83 @@
+package server;
+
+import emulator.Chip8Emulator;
+import event.EventBus;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.zip.DataFormatException;
+
+/**
+ * Receives frames from a {@link FrameStreamServer} and rebuilds them into a display array in the layout of
+ * {@link Chip8Emulator#getDisplay()}. Every received frame is also published as a frame-ready event.
+ */
+public class FrameStreamClient implements Closeable {
+    private final Socket socket;
+    private final FrameCodec codec = new FrameCodec();
+    private final long[] frame = new long[FrameCodec.ROWS];
+    private final short[] display = new short[Chip8Emulator.DISPLAY_WIDTH * Chip8Emulator.DISPLAY_HEIGHT];
+    private volatile long framesReceived;
+    private volatile EventBus eventBus;
+
+    public FrameStreamClient(final String host, final int port) throws IOException {
+        this.socket = new Socket(host, port);
+        Thread receiver = new Thread(this::receive, "frame-stream-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * @return the display, updated in place whenever a frame arrives.
+     */
+    public short[] getDisplay() {
+        return display;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    /**
+     * Publishes every received frame to the given bus, null turns it off.
+     */
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[FrameCodec.MAX_ENCODED_SIZE];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || length > buffer.length) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                in.readFully(buffer, 0, length);
+                codec.decode(buffer, length, frame);
+                FrameCodec.unpack(frame, display);
+                framesReceived++;
+                EventBus bus = eventBus;
+                if (bus != null) {
+                    bus.publishFrameReady(frame);
+                }
+            }
+        } catch (EOFException e) {
+            // Server closed the stream.
+        } catch (IOException | DataFormatException e) {
+            if (!socket.isClosed()) {
+                e.printStackTrace();
+            }
+        } finally {
+            codec.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,216 @@
+package server;
+
+import emulator.Chip8Emulator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Streams the display of a running emulator to any number of TCP clients.
+ * <p>
+ * The emulation thread only hands over a packed copy of the frame when the display actually changed.
+ * Every client has its own sender thread which always sends the newest frame; frames published while a
+ * client is still busy are dropped for that client, so a slow connection never stalls emulation.
+ * <p>
+ * Wire format per frame: a 4-byte length followed by a {@link FrameCodec} encoded delta.
+ */
+public class FrameStreamServer implements Closeable {
+
+    private static final class Frame {
+        final long sequence;
+        final long[] rows;
+
+        Frame(long sequence, long[] rows) {
+            this.sequence = sequence;
+            this.rows = rows;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final List<ClientConnection> clients = new CopyOnWriteArrayList<>();
+    private final Object frameLock = new Object();
+    private final long[] scratch = new long[FrameCodec.ROWS];
+
+    private volatile Frame latest = new Frame(0, new long[FrameCodec.ROWS]);
+    private volatile boolean closed;
+    private int lastDisplayVersion = -1;
+
+    /**
+     * Binds to the loopback interface.
+     *
+     * @param port port to listen on, 0 picks a free one.
+     */
+    public FrameStreamServer(final int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public FrameStreamServer(InetSocketAddress address) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+        Thread acceptor = new Thread(this::acceptClients, "frame-stream-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Parses a listen address of the form {@code port} or {@code host:port}. A bare port binds to the loopback
+     * interface only; {@code 0.0.0.0:port} or {@code *:port} accepts viewers from other machines.
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        String host = address.substring(0, colon);
+        int port = Integer.parseInt(address.substring(colon + 1));
+        if (host.isEmpty() || host.equals("*")) {
+            return new InetSocketAddress(port);
+        }
+        // IPv6 literals are written in brackets, e.g. [::1]:5000.
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        return new InetSocketAddress(host, port);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Offers the current display of the emulator to all clients. Cheap when the display did not change,
+     * so it may be called after every instruction.
+     */
+    public void publishFrame(Chip8Emulator emulator) {
+        int version = emulator.getDisplayVersion();
+        if (version == lastDisplayVersion) {
+            return;
+        }
+        lastDisplayVersion = version;
+        emulator.packDisplay(scratch);
+        publishFrame(scratch);
+    }
+
+    /**
+     * Offers an already packed display to all clients, e.g. the one carried by a frame-ready event.
+     * Nothing is sent if it equals the last frame.
+     */
+    public void publishFrame(long[] rows) {
+        Frame current = latest;
+        if (Arrays.equals(rows, current.rows)) {
+            return;
+        }
+        Frame next = new Frame(current.sequence + 1, rows.clone());
+        synchronized (frameLock) {
+            latest = next;
+            frameLock.notifyAll();
+        }
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return frames that were skipped for slow clients, summed over all connected clients.
+     */
+    public long getDroppedFrames() {
+        long dropped = 0;
+        for (ClientConnection client : clients) {
+            dropped += client.dropped;
+        }
+        return dropped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (ClientConnection client : clients) {
+            client.close();
+        }
+        synchronized (frameLock) {
+            frameLock.notifyAll();
+        }
+    }
+
+    private void acceptClients() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                ClientConnection client = new ClientConnection(socket);
+                clients.add(client);
+                Thread sender = new Thread(client, "frame-stream-client-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private final class ClientConnection implements Runnable {
+        private final Socket socket;
+        private final FrameCodec codec = new FrameCodec();
+        private final byte[] buffer = new byte[FrameCodec.MAX_ENCODED_SIZE];
+        private long sent = -1;
+        private volatile long dropped;
+
+        ClientConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                while (!closed) {
+                    Frame frame;
+                    synchronized (frameLock) {
+                        while ((frame = latest).sequence == sent && !closed) {
+                            frameLock.wait();
+                        }
+                    }
+                    if (closed) {
+                        break;
+                    }
+                    if (sent >= 0) {
+                        dropped += frame.sequence - sent - 1;
+                    }
+                    int length = codec.encode(frame.rows, buffer);
+                    out.writeInt(length);
+                    out.write(buffer, 0, length);
+                    out.flush();
+                    sent = frame.sequence;
+                }
+            } catch (IOException e) {
+                // Client went away.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                clients.remove(this);
+                codec.close();
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package util;
+
+/**
+ * Allocation-free 64-bit hashing for machine state. Values are folded in one long at a time with
+ * {@link #mix(long, long)} and the result is finished with {@link #finish(long)} (the MurmurHash3 finalizer).
+ * Different seeds give independent hashes, two of them make a 128-bit fingerprint.
+ */
+public final class Hashing {
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private Hashing() {
+    }
+
+    public static long mix(long hash, long value) {
+        hash ^= value * MULTIPLIER;
+        hash = Long.rotateLeft(hash, 27) * 0xC2B2AE3D27D4EB4FL;
+        return hash + 0x165667B19E3779F9L;
+    }
+
+    public static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public static long hash64(long[] values, long seed) {
+        long hash = seed;
+        for (long value : values) {
+            hash = mix(hash, value);
+        }
+        return finish(hash ^ values.length);
+    }
+}
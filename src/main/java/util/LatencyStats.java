@@ -0,0 +1,77 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples without allocating. Samples go into power-of-two microsecond buckets,
+ * which is precise enough to read percentiles off a responsiveness target.
+ * Meant to be fed from a single thread; readers on other threads may see slightly stale values.
+ */
+public class LatencyStats {
+    private static final int BUCKETS = 32;
+
+    private final long[] histogram = new long[BUCKETS];
+    private volatile long count;
+    private volatile long totalNanos;
+    private volatile long maxNanos;
+
+    public void record(final long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        histogram[bucket]++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        long n = count;
+        return n == 0 ? 0 : totalNanos / (n * 1_000_000.0);
+    }
+
+    public double getMaxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return upper bound of the bucket holding the given percentile, in milliseconds.
+     */
+    public double getPercentileMillis(final double percentile) {
+        long n = count;
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    public void reset() {
+        Arrays.fill(histogram, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.2fms p99=%.2fms max=%.2fms",
+                getCount(), getMeanMillis(), getPercentileMillis(99), getMaxMillis());
+    }
+}
@@ -1,7 +0,0 @@
-package util;
-
-public interface Observable {
-    public void addObserver(Observer observer);
-    public void removeObserver(Observer observer);
-    public void notifyObservers();
-}
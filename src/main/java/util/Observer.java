@@ -1,5 +0,0 @@
-package util;
-
-public interface Observer {
-    public void update();
-}
@@ -1,35 +1,81 @@
 package view;
 
 import controller.EmulatorController;
+import controller.SteppingJob;
+import emulator.Disassembler;
+import emulator.StopReason;
 
 import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class ControlPanel extends JPanel {
+    // Upper bound for the background "Run until" jobs, they can be cancelled.
+    private static final long MAX_JOB_CYCLES = 1_000_000_000;
+
     private JButton emulateCycle;
     private JButton emulateNCycles;
     private JTextField numberOfCycles;
     private JButton undo;
+    private JTextField breakpoint;
+    private JButton heatMap;
+    private JButton runUntilPc;
+    private JButton runUntilDraw;
+    private JButton cancel;
+    private JProgressBar progress;
+    // The background job currently running, null if none. Only touched on the EDT.
+    private SteppingJob job;
+    // False while another thread runs the emulator in real time, then the controls stay disabled.
+    private final boolean stepping;
     private JTextField lastInstruction;
     private EmulatorController controller;
+    private final StringBuilder instructionText = new StringBuilder(32);
 
     public ControlPanel(EmulatorController controller) {
+        this(controller, true);
+    }
+
+    /**
+     * @param stepping false if a {@link host.SpeedGovernor} runs the emulator, which no other thread may touch.
+     *                 Stepping, undo and the heat map are disabled then.
+     */
+    public ControlPanel(EmulatorController controller, final boolean stepping) {
         this.controller = controller;
+        this.stepping = stepping;
 
         lastInstruction = new JTextField(20);
         emulateCycle = new JButton("Emulate Cycle");
         emulateNCycles = new JButton("Emulate n Cycles");
         numberOfCycles = new JTextField(5);
         undo = new JButton("Undo");
-
+        breakpoint = new JTextField(4);
+        breakpoint.setToolTipText("Breakpoint address in hex, e.g. 2A0");
+        heatMap = new JButton("Heat Map");
+        runUntilPc = new JButton("Run until PC");
+        runUntilPc.setToolTipText("Runs in the background until the PC reaches the address in the breakpoint field");
+        runUntilDraw = new JButton("Run until Draw");
+        cancel = new JButton("Cancel");
+        progress = new JProgressBar(0, 100);
+        progress.setStringPainted(true);
+        progress.setString("");
 
         emulateCycle.addActionListener(e -> this.controller.executeCycle());
-        emulateNCycles.addActionListener(e -> {
-            for(int i = 0; i<Integer.parseInt(numberOfCycles.getText()); i++){
-                this.controller.executeCycle();
+        emulateNCycles.addActionListener(e ->
+                startJob(SteppingJob.cycles(Long.parseLong(numberOfCycles.getText().trim()))));
+        runUntilPc.addActionListener(e -> {
+            String address = breakpoint.getText().trim();
+            if (!address.isEmpty()) {
+                startJob(SteppingJob.untilPc(Integer.parseInt(address, 16), MAX_JOB_CYCLES));
+            }
+        });
+        runUntilDraw.addActionListener(e -> startJob(SteppingJob.untilDisplayChange(MAX_JOB_CYCLES)));
+        cancel.addActionListener(e -> {
+            if (job != null) {
+                job.cancel();
             }
-            // this.controller.executeCycles(Integer.parseInt(numberOfCycles.getText()));
         });
         undo.addActionListener(e -> this.controller.undo());
+        heatMap.addActionListener(e -> showHeatMap());
         lastInstruction.setText(this.controller.getNextInstruction());
 
         add(lastInstruction);
@@ -37,12 +83,108 @@ public class ControlPanel extends JPanel {
         add(emulateNCycles);
         add(numberOfCycles);
         add(undo);
+        add(breakpoint);
+        add(runUntilPc);
+        add(runUntilDraw);
+        add(heatMap);
+        add(progress);
+        add(cancel);
 
+        setSteppingEnabled(true);
+        if (!stepping) {
+            String reason = "Not available while the emulator runs in real time";
+            for (JComponent control : new JComponent[]{emulateCycle, emulateNCycles, undo, runUntilPc,
+                    runUntilDraw, heatMap}) {
+                control.setToolTipText(reason);
+            }
+        }
         setVisible(true);
     }
 
 
+    /**
+     * Runs the job on a worker thread. The stepping controls are disabled until it ends, since the controller
+     * belongs to the worker meanwhile.
+     */
+    private void startJob(SteppingJob next) {
+        if (job != null) {
+            return;
+        }
+        job = next;
+        setSteppingEnabled(false);
+        progress.setValue(0);
+        progress.setString("Running");
+        SteppingJob running = next;
+        // The undo history belongs to the EDT, the worker only runs the emulator.
+        controller.prepareJob();
+        new SwingWorker<StopReason, Long>() {
+            @Override
+            protected StopReason doInBackground() {
+                return controller.runJob(running, this::publish);
+            }
+
+            @Override
+            protected void process(List<Long> executed) {
+                long latest = executed.get(executed.size() - 1);
+                progress.setValue((int) (100 * latest / running.getMaxCycles()));
+                progress.setString(latest + " cycles");
+            }
+
+            @Override
+            protected void done() {
+                job = null;
+                setSteppingEnabled(true);
+                try {
+                    StopReason reason = get();
+                    progress.setValue(100);
+                    progress.setString((running.isCancelled() ? "Cancelled" : describe(reason))
+                            + " after " + running.getExecuted() + " cycles");
+                } catch (InterruptedException | ExecutionException e) {
+                    progress.setString("Failed: " + e.getCause());
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    private static String describe(StopReason reason) {
+        switch (reason) {
+            case BREAKPOINT: return "Stopped at breakpoint";
+            case DISPLAY_CHANGED: return "Display changed";
+            case WAITING_FOR_KEY: return "Waiting for key";
+            case ILLEGAL_OPCODE: return "Illegal instruction";
+            default: return "Done";
+        }
+    }
+
+    private void setSteppingEnabled(boolean enabled) {
+        cancel.setEnabled(!enabled);
+        enabled &= stepping;
+        emulateCycle.setEnabled(enabled);
+        emulateNCycles.setEnabled(enabled);
+        undo.setEnabled(enabled);
+        runUntilPc.setEnabled(enabled);
+        runUntilDraw.setEnabled(enabled);
+        // Enabling the heat map attaches it to the emulator, which a running job owns.
+        heatMap.setEnabled(enabled);
+    }
+
+    // Counting starts with the first click, the window shows the accesses from then on.
+    private void showHeatMap() {
+        JFrame frame = new JFrame("Memory heat map");
+        frame.add(new HeatMapPanel(this.controller.enableHeatMap()));
+        frame.pack();
+        frame.setVisible(true);
+    }
+
     public void setInstruction(final String instr) {
         this.lastInstruction.setText("Next Instruction: " + instr);
     }
+
+    public void setInstruction(final int opcode) {
+        this.instructionText.setLength(0);
+        this.instructionText.append("Next Instruction: ");
+        Disassembler.hex(this.instructionText, opcode, 4);
+        this.lastInstruction.setText(this.instructionText.toString());
+    }
 }
@@ -1,68 +1,161 @@
 package view;
 
-import util.Observer;
+import emulator.Chip8Emulator;
+import event.EmulatorEvent;
+import event.EventListener;
+import event.EventType;
+import host.FrameRenderer;
+import util.LatencyStats;
 import controller.EmulatorController;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
-public class GUI extends JFrame implements Observer {
+public class GUI extends JFrame implements EventListener, FrameRenderer {
 
-    private static final short CELL_SIZE = 10;
-    private short[] gridData;
+    // Packed display as of the last event, one long per row. Guarded by itself, written by the event dispatcher.
+    private final long[] rows = new long[32];
+    // Copy of rows taken for one paint, so the upscaler runs without holding the lock.
+    private final long[] paintRows = new long[32];
+    // Replaced by setFilter() on the EDT, read by the event dispatcher to map changed regions.
+    private volatile Upscaler upscaler = new Upscaler(Upscaler.Filter.NEAREST);
+    private JPanel gridPanel;
     private ControlPanel controlPanel;
 
     private EmulatorController controller;
+    // Instruction at the PC after the last update, shown on the next paint.
+    private volatile int nextOpcode = -1;
+    private int shownOpcode = -1;
+    // Set while a frame handed over by render() waits to be painted.
+    private volatile boolean paintPending;
+
+    // Time from a key event until the first frame painted after it.
+    private final LatencyStats inputLatency = new LatencyStats();
+
     public GUI(EmulatorController controller) {
-        gridData = new short[64 * 32];
+        this(controller, true);
+    }
+
+    /**
+     * @param stepping false if a {@link host.SpeedGovernor} runs the emulator, see {@link ControlPanel}.
+     */
+    public GUI(EmulatorController controller, final boolean stepping) {
         this.controller = controller;
-        this.gridData = this.controller.getDisplay();
+        this.controller.packDisplay(this.rows);
+
+        createGridPanel("Grid GUI");
+        gridPanel.addKeyListener(new KeypadListener(controller.getKeypad()));
 
-        setTitle("Grid GUI");
+        this.controlPanel = new ControlPanel(controller, stepping);
+        add(this.controlPanel, BorderLayout.SOUTH);
+        setVisible(true);
+        gridPanel.requestFocusInWindow();
+    }
+
+    /**
+     * Creates a view-only window without controls, e.g. for frames received from a
+     * {@link server.FrameStreamClient}. Shows whatever display the events it receives carry.
+     */
+    public GUI() {
+        createGridPanel("Grid GUI - remote");
+        setVisible(true);
+    }
+
+    private void createGridPanel(final String title) {
+        setTitle(title);
         setSize(800, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        JPanel gridPanel = new JPanel() {
+        gridPanel = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
                 drawGrid(g);
+                paintPending = false;
+                if (controller == null) {
+                    return;
+                }
+                int opcode = nextOpcode;
+                if (opcode != shownOpcode) {
+                    shownOpcode = opcode;
+                    controlPanel.setInstruction(opcode);
+                }
+                long eventNanos = controller.getKeypad().takePendingEventNanos();
+                if (eventNanos != 0) {
+                    inputLatency.record(System.nanoTime() - eventNanos);
+                    setTitle(title + " - input to frame " + inputLatency);
+                }
             }
         };
+        gridPanel.setFocusable(true);
+        gridPanel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                gridPanel.requestFocusInWindow();
+            }
+        });
 
         add(gridPanel);
-
-        this.controlPanel = new ControlPanel(controller);
-        add(this.controlPanel, BorderLayout.SOUTH);
-        setVisible(true);
     }
 
-    private void drawGrid(Graphics g) {
-        final int numRows = 32;
-        final int numCols = 64;
-
-        for (int row = 0; row < numRows; row++) {
-            for (int col = 0; col < numCols; col++) {
-                int x = col * CELL_SIZE;
-                int y = row * CELL_SIZE;
+    public LatencyStats getInputLatency() {
+        return inputLatency;
+    }
 
-                int index = row * numCols + col;
+    /**
+     * Selects the pixel-art filter used to enlarge the display. Call on the event dispatch thread.
+     */
+    public void setFilter(Upscaler.Filter filter) {
+        this.upscaler = new Upscaler(filter);
+        gridPanel.repaint();
+    }
 
-                if (gridData[index] == 0) {
-                    g.setColor(Color.WHITE);
-                } else {
-                    g.setColor(Color.BLACK);
-                }
+    private void drawGrid(Graphics g) {
+        synchronized (rows) {
+            System.arraycopy(rows, 0, paintRows, 0, rows.length);
+        }
+        Upscaler scaler = this.upscaler;
+        scaler.update(paintRows);
+        scaler.paint((Graphics2D) g, gridPanel.getWidth(), gridPanel.getHeight());
+    }
 
-                g.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-            }
+    @Override
+    public void render(Chip8Emulator emulator) {
+        synchronized (rows) {
+            emulator.packDisplay(rows);
         }
+        this.nextOpcode = emulator.getPCInstruction();
+        paintPending = true;
+        gridPanel.repaint();
     }
 
     @Override
-    public void update() {
-        this.gridData = this.controller.getDisplay();
-        this.controlPanel.setInstruction(this.controller.getNextInstruction());
-        repaint();
+    public boolean isBusy() {
+        return paintPending;
+    }
+
+    @Override
+    public void onEvent(EmulatorEvent event) {
+        // Runs on the event dispatcher: only record what changed, formatting and painting wait for the EDT.
+        if (event.getOpcode() >= 0) {
+            this.nextOpcode = event.getOpcode();
+        }
+        if (!event.getType().hasDisplay()) {
+            if (event.getType() == EventType.HALTED) {
+                gridPanel.repaint();
+            }
+            return;
+        }
+        synchronized (rows) {
+            System.arraycopy(event.getRows(), 0, rows, 0, rows.length);
+        }
+        if (event.getType() == EventType.DISPLAY_CHANGED) {
+            gridPanel.repaint(upscaler.toView(event.getX(), event.getY(), event.getWidth(), event.getHeight(),
+                    gridPanel.getWidth(), gridPanel.getHeight()));
+        } else {
+            gridPanel.repaint();
+        }
     }
 }
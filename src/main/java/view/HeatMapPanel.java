@@ -0,0 +1,77 @@
+package view;
+
+import emulator.MemoryHeatMap;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Shows a {@link MemoryHeatMap} as a 64 x 64 grid, one cell per address, 0x000 at the top left.
+ * <p>
+ * Green is instruction fetches, blue data reads and red writes; brightness grows with the logarithm of the
+ * count. A cell that is green and red at once is self-modified code. Refreshes itself a few times per second.
+ */
+public class HeatMapPanel extends JPanel {
+    private static final int COLUMNS = 64;
+    private static final int CELL_SIZE = 8;
+    private static final int REFRESH_MILLIS = 250;
+
+    private final MemoryHeatMap heatMap;
+    private final Timer refresh = new Timer(REFRESH_MILLIS, e -> repaint());
+
+    public HeatMapPanel(MemoryHeatMap heatMap) {
+        this.heatMap = heatMap;
+        int rows = (heatMap.size() + COLUMNS - 1) / COLUMNS;
+        setPreferredSize(new Dimension(COLUMNS * CELL_SIZE, rows * CELL_SIZE));
+        setToolTipText("");
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refresh.stop();
+        super.removeNotify();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        for (int address = 0; address < heatMap.size(); address++) {
+            long fetches = heatMap.getFetches(address);
+            long reads = heatMap.getReads(address);
+            long writes = heatMap.getWrites(address);
+            if (fetches == 0 && reads == 0 && writes == 0) {
+                continue;
+            }
+            g.setColor(new Color(level(writes), level(fetches), level(reads)));
+            g.fillRect((address % COLUMNS) * CELL_SIZE, (address / COLUMNS) * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+        }
+    }
+
+    @Override
+    public String getToolTipText(java.awt.event.MouseEvent event) {
+        int address = (event.getY() / CELL_SIZE) * COLUMNS + event.getX() / CELL_SIZE;
+        if (address < 0 || address >= heatMap.size()) {
+            return null;
+        }
+        return String.format("0x%03X: %d fetches, %d reads, %d writes (%s page)", address,
+                heatMap.getFetches(address), heatMap.getReads(address), heatMap.getWrites(address),
+                heatMap.classify(address / MemoryHeatMap.PAGE_SIZE));
+    }
+
+    // 0 stays dark, one access is dim and about a million accesses are full brightness.
+    private static int level(final long count) {
+        if (count == 0) {
+            return 0;
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(count);
+        return Math.min(255, 64 + bits * 191 / 20);
+    }
+}
@@ -0,0 +1,68 @@
+package view;
+
+import emulator.Keypad;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+
+/**
+ * Maps the left side of a QWERTY keyboard onto the 16-key hex pad:
+ * <pre>
+ * 1 2 3 4        1 2 3 C
+ * Q W E R   =>   4 5 6 D
+ * A S D F        7 8 9 E
+ * Z X C V        A 0 B F
+ * </pre>
+ */
+public class KeypadListener implements KeyListener {
+    private final Keypad keypad;
+
+    public KeypadListener(Keypad keypad) {
+        this.keypad = keypad;
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        int key = toChip8Key(e.getKeyCode());
+        if (key >= 0) {
+            keypad.press(key);
+        }
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {
+        int key = toChip8Key(e.getKeyCode());
+        if (key >= 0) {
+            keypad.release(key);
+        }
+    }
+
+    @Override
+    public void keyTyped(KeyEvent e) {
+    }
+
+    /**
+     * @return the hex key for the given AWT key code, -1 if the key is not mapped.
+     */
+    static int toChip8Key(final int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_1: return 0x1;
+            case KeyEvent.VK_2: return 0x2;
+            case KeyEvent.VK_3: return 0x3;
+            case KeyEvent.VK_4: return 0xC;
+            case KeyEvent.VK_Q: return 0x4;
+            case KeyEvent.VK_W: return 0x5;
+            case KeyEvent.VK_E: return 0x6;
+            case KeyEvent.VK_R: return 0xD;
+            case KeyEvent.VK_A: return 0x7;
+            case KeyEvent.VK_S: return 0x8;
+            case KeyEvent.VK_D: return 0x9;
+            case KeyEvent.VK_F: return 0xE;
+            case KeyEvent.VK_Z: return 0xA;
+            case KeyEvent.VK_X: return 0x0;
+            case KeyEvent.VK_C: return 0xB;
+            case KeyEvent.VK_V: return 0xF;
+            default: return -1;
+        }
+    }
+}
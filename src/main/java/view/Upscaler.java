@@ -0,0 +1,272 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Upscales a packed framebuffer with a pixel-art filter into a reusable image and draws it fitted to a window.
+ * <p>
+ * The framebuffer is given as packed rows like {@link emulator.Chip8Emulator#packDisplay(long[])}, bit 63 of
+ * the first word is the leftmost pixel. Each update compares the rows with the previous frame and recomputes only
+ * the changed rows, plus their neighbours for filters that look at adjacent pixels. Not thread-safe, used by the
+ * Swing event dispatch thread only.
+ */
+public class Upscaler {
+
+    public enum Filter {
+        /**
+         * No filtering, the image is enlarged by an integer factor when drawn.
+         */
+        NEAREST(1),
+        SCALE2X(2),
+        /**
+         * Eric's Pixel Expansion, like Scale2x but keeps pixels whose neighbours mostly agree.
+         */
+        EPX(2),
+        SCALE3X(3);
+
+        private final int factor;
+
+        Filter(int factor) {
+            this.factor = factor;
+        }
+
+        public int getFactor() {
+            return factor;
+        }
+    }
+
+    private static final Color LETTERBOX = Color.DARK_GRAY;
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final Filter filter;
+    private final int factor;
+    private final int[] palette;
+
+    // The frame the image currently shows.
+    private final long[] shown;
+    private final boolean[] dirty;
+    private boolean empty = true;
+    private int lastUpdatedRows;
+
+    private final BufferedImage image;
+    private final int[] pixels;
+
+    /**
+     * @param palette RGB colour of a clear and a set pixel.
+     */
+    public Upscaler(final int width, final int height, Filter filter, int... palette) {
+        if (palette.length < 2) {
+            throw new IllegalArgumentException("Need a colour for clear and for set pixels");
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) / 64;
+        this.filter = filter;
+        this.factor = filter.getFactor();
+        this.palette = palette.clone();
+        this.shown = new long[height * wordsPerRow];
+        this.dirty = new boolean[height];
+        this.image = new BufferedImage(width * factor, height * factor, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Black pixels on white, like the original cell grid.
+     */
+    public Upscaler(Filter filter) {
+        this(64, 32, filter, 0xFFFFFF, 0x000000);
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Brings the image up to date with the given frame.
+     *
+     * @param rows {@code height} rows of packed pixels.
+     */
+    public void update(long[] rows) {
+        // Filters with neighbours change the output one row above and below a changed row as well.
+        int reach = filter == Filter.NEAREST ? 0 : 1;
+        for (int y = 0; y < height; y++) {
+            int start = y * wordsPerRow;
+            if (empty || !Arrays.equals(rows, start, start + wordsPerRow, shown, start, start + wordsPerRow)) {
+                for (int near = Math.max(0, y - reach); near <= Math.min(height - 1, y + reach); near++) {
+                    dirty[near] = true;
+                }
+            }
+        }
+        System.arraycopy(rows, 0, shown, 0, shown.length);
+        empty = false;
+
+        lastUpdatedRows = 0;
+        for (int y = 0; y < height; y++) {
+            if (dirty[y]) {
+                dirty[y] = false;
+                scaleRow(y);
+                lastUpdatedRows++;
+            }
+        }
+    }
+
+    /**
+     * @return framebuffer rows recomputed by the last {@link #update(long[])}.
+     */
+    public int getLastUpdatedRows() {
+        return lastUpdatedRows;
+    }
+
+    /**
+     * @return the upscaled frame, {@code factor} times the framebuffer size. Reused by every update.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    // Pixels outside the framebuffer repeat the edge.
+    private int pixel(int x, int y) {
+        x = Math.max(0, Math.min(width - 1, x));
+        y = Math.max(0, Math.min(height - 1, y));
+        return (int) (shown[y * wordsPerRow + (x >>> 6)] >>> (63 - (x & 63))) & 1;
+    }
+
+    private void scaleRow(final int y) {
+        int stride = width * factor;
+        int out = y * factor * stride;
+        for (int x = 0; x < width; x++, out += factor) {
+            int e = pixel(x, y);
+            switch (filter) {
+                case NEAREST:
+                    pixels[out] = palette[e];
+                    break;
+                case SCALE2X:
+                    scale2x(out, stride, e, pixel(x, y - 1), pixel(x - 1, y), pixel(x + 1, y), pixel(x, y + 1));
+                    break;
+                case EPX:
+                    epx(out, stride, e, pixel(x, y - 1), pixel(x - 1, y), pixel(x + 1, y), pixel(x, y + 1));
+                    break;
+                case SCALE3X:
+                    scale3x(out, stride, x, y);
+                    break;
+            }
+        }
+    }
+
+    //   B
+    // D E F
+    //   H
+    private void scale2x(int out, int stride, int e, int b, int d, int f, int h) {
+        int e0 = e, e1 = e, e2 = e, e3 = e;
+        if (b != h && d != f) {
+            e0 = d == b ? d : e;
+            e1 = b == f ? f : e;
+            e2 = d == h ? d : e;
+            e3 = h == f ? f : e;
+        }
+        pixels[out] = palette[e0];
+        pixels[out + 1] = palette[e1];
+        pixels[out + stride] = palette[e2];
+        pixels[out + stride + 1] = palette[e3];
+    }
+
+    private void epx(int out, int stride, int p, int a, int c, int b, int d) {
+        int p1 = c == a ? a : p;
+        int p2 = a == b ? b : p;
+        int p3 = d == c ? c : p;
+        int p4 = b == d ? d : p;
+        // With three or four equal neighbours every corner would take them over, so the pixel is kept.
+        if ((a == b && (a == c || a == d)) || (c == d && (c == a || c == b))) {
+            p1 = p2 = p3 = p4 = p;
+        }
+        pixels[out] = palette[p1];
+        pixels[out + 1] = palette[p2];
+        pixels[out + stride] = palette[p3];
+        pixels[out + stride + 1] = palette[p4];
+    }
+
+    // A B C
+    // D E F
+    // G H I
+    private void scale3x(int out, int stride, int x, int y) {
+        int a = pixel(x - 1, y - 1), b = pixel(x, y - 1), c = pixel(x + 1, y - 1);
+        int d = pixel(x - 1, y), e = pixel(x, y), f = pixel(x + 1, y);
+        int g = pixel(x - 1, y + 1), h = pixel(x, y + 1), i = pixel(x + 1, y + 1);
+        int e0 = e, e1 = e, e2 = e, e3 = e, e5 = e, e6 = e, e7 = e, e8 = e;
+        if (b != h && d != f) {
+            e0 = d == b ? d : e;
+            e1 = (d == b && e != c) || (b == f && e != a) ? b : e;
+            e2 = b == f ? f : e;
+            e3 = (d == b && e != g) || (d == h && e != a) ? d : e;
+            e5 = (b == f && e != i) || (h == f && e != c) ? f : e;
+            e6 = d == h ? d : e;
+            e7 = (d == h && e != i) || (h == f && e != g) ? h : e;
+            e8 = h == f ? f : e;
+        }
+        pixels[out] = palette[e0];
+        pixels[out + 1] = palette[e1];
+        pixels[out + 2] = palette[e2];
+        pixels[out + stride] = palette[e3];
+        pixels[out + stride + 1] = palette[e];
+        pixels[out + stride + 2] = palette[e5];
+        pixels[out + 2 * stride] = palette[e6];
+        pixels[out + 2 * stride + 1] = palette[e7];
+        pixels[out + 2 * stride + 2] = palette[e8];
+    }
+
+    /**
+     * Where the frame is drawn in an area of the given size: as large as fits with the framebuffer's aspect
+     * ratio, centred. Whole multiples of the filter factor are preferred so every pixel gets the same size.
+     */
+    public Rectangle viewport(final int areaWidth, final int areaHeight) {
+        double fit = Math.min((double) areaWidth / width, (double) areaHeight / height);
+        double scale = fit;
+        if (fit >= factor) {
+            scale = Math.floor(fit / factor) * factor;
+        } else if (fit >= 1) {
+            scale = Math.floor(fit);
+        }
+        int viewWidth = (int) Math.round(width * scale);
+        int viewHeight = (int) Math.round(height * scale);
+        return new Rectangle((areaWidth - viewWidth) / 2, (areaHeight - viewHeight) / 2, viewWidth, viewHeight);
+    }
+
+    /**
+     * @return the part of an area of the given size that shows the given framebuffer region, grown by one pixel
+     * on every side since filters blend neighbours.
+     */
+    public Rectangle toView(int x, int y, int regionWidth, int regionHeight, int areaWidth, int areaHeight) {
+        Rectangle view = viewport(areaWidth, areaHeight);
+        int left = Math.max(0, x - 1);
+        int top = Math.max(0, y - 1);
+        int right = Math.min(width, x + regionWidth + 1);
+        int bottom = Math.min(height, y + regionHeight + 1);
+        int viewLeft = view.x + left * view.width / width;
+        int viewTop = view.y + top * view.height / height;
+        return new Rectangle(viewLeft, viewTop,
+                view.x + (right * view.width + width - 1) / width - viewLeft,
+                view.y + (bottom * view.height + height - 1) / height - viewTop);
+    }
+
+    /**
+     * Draws the image fitted into an area of the given size and fills the rest with bars.
+     */
+    public void paint(Graphics2D g, final int areaWidth, final int areaHeight) {
+        Rectangle view = viewport(areaWidth, areaHeight);
+        g.setColor(LETTERBOX);
+        g.fillRect(0, 0, areaWidth, view.y);
+        g.fillRect(0, view.y + view.height, areaWidth, areaHeight - view.y - view.height);
+        g.fillRect(0, view.y, view.x, view.height);
+        g.fillRect(view.x + view.width, view.y, areaWidth - view.x - view.width, view.height);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(image, view.x, view.y, view.width, view.height, null);
+    }
+}
@@ -0,0 +1,97 @@
+package controller;
+
+import emulator.Chip8Emulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.rom;
+
+class RomWatcherTest {
+
+    @TempDir
+    Path directory;
+
+    private static void awaitReloads(RomWatcher watcher, long reloads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (watcher.getReloads() < reloads && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(watcher.getReloads()).isEqualTo(reloads);
+    }
+
+    @Test
+    void testPatchesChangedBytesAndResumes() throws IOException, InterruptedException {
+        // 7001: V0 += 1, 1200: loop
+        byte[] original = rom(0x7001, 0x1200);
+        Path file = directory.resolve("game.ch8");
+        Files.write(file, original);
+        Chip8Emulator cpu = new Chip8Emulator();
+        cpu.loadRom(original);
+        cpu.executeCycles(3);
+
+        try (RomWatcher watcher = new RomWatcher(file, original, Runnable::run, () -> cpu, RomWatcher.Mode.RESUME)) {
+            // 7005: V0 += 5
+            Files.write(file, rom(0x7005, 0x1200));
+            awaitReloads(watcher, 1);
+
+            assertThat(watcher.getLastPatchedBytes()).isEqualTo(1);
+            assertThat(cpu.getProgramCounter()).isEqualTo(0x202);
+            assertThat(cpu.getPCInstruction()).isEqualTo(0x1200);
+            cpu.executeCycles(1);
+            assertThat(cpu.getPCInstruction()).isEqualTo(0x7005);
+        }
+    }
+
+    @Test
+    void testRestoreGoesBackToSavedState() throws IOException, InterruptedException {
+        byte[] original = rom(0x7001, 0x1200);
+        Path file = directory.resolve("game.ch8");
+        Files.write(file, original);
+        Chip8Emulator cpu = new Chip8Emulator();
+        cpu.loadRom(original);
+        long start = cpu.stateHash();
+
+        try (RomWatcher watcher = new RomWatcher(file, original, Runnable::run, () -> cpu, RomWatcher.Mode.RESTORE)) {
+            cpu.executeCycles(5);
+            Files.write(file, rom(0x7002, 0x1200, 0x00E0));
+            awaitReloads(watcher, 1);
+            Chip8Emulator expected = new Chip8Emulator();
+            expected.loadRom(rom(0x7002, 0x1200, 0x00E0));
+
+            assertThat(cpu.getProgramCounter()).isEqualTo(0x200);
+            assertThat(cpu.stateHash()).isEqualTo(expected.stateHash());
+            assertThat(cpu.stateHash()).isNotEqualTo(start);
+        }
+    }
+
+    @Test
+    void testRomTooLargeIsReportedAndSkipped() throws IOException, InterruptedException {
+        byte[] original = rom(0x7001, 0x1200);
+        Path file = directory.resolve("game.ch8");
+        Files.write(file, original);
+        Chip8Emulator cpu = new Chip8Emulator();
+        cpu.loadRom(original);
+
+        try (RomWatcher watcher = new RomWatcher(file, original, Runnable::run, () -> cpu, RomWatcher.Mode.RESUME)) {
+            Files.write(file, new byte[cpu.getMaxRomSize() + 1]);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (watcher.getFailedReloads() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(watcher.getFailedReloads()).isEqualTo(1);
+            assertThat(watcher.getReloads()).isEqualTo(0);
+            assertThat(cpu.getPCInstruction()).isEqualTo(0x7001);
+
+            // The next save that fits is patched against the version still in memory.
+            Files.write(file, rom(0x7005, 0x1200));
+            awaitReloads(watcher, 1);
+            assertThat(watcher.getLastPatchedBytes()).isEqualTo(1);
+            assertThat(cpu.getPCInstruction()).isEqualTo(0x7005);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package controller;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+import event.EventBus;
+import event.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+
+class SteppingJobTest {
+
+    @Test
+    void testRunsCyclesInBatchesAndUndoesInOneStep() {
+        // 7001: V0 += 1, 1200: loop
+        Chip8Emulator cpu = emulatorWith(0x7001, 0x1200);
+        EmulatorController controller = new EmulatorController(cpu);
+        AtomicInteger batches = new AtomicInteger();
+        SteppingJob job = SteppingJob.cycles(25_001);
+
+        controller.prepareJob();
+        StopReason reason = controller.runJob(job, executed -> batches.incrementAndGet());
+
+        assertThat(reason).isEqualTo(StopReason.BUDGET_EXHAUSTED);
+        assertThat(job.getExecuted()).isEqualTo(25_001);
+        assertThat(job.getStopReason()).isEqualTo(StopReason.BUDGET_EXHAUSTED);
+        assertThat(batches.get()).isEqualTo(3);
+        assertThat(controller.getHistoryDepth()).isEqualTo(1);
+        controller.undo();
+        assertThat(controller.getEmulator().getCycles()).isEqualTo(0);
+    }
+
+    @Test
+    void testStopsAtPc() {
+        // 7001: V0 += 1, 3003: skip if V0 == 3, 1200: loop, 1206: stay at 0x206
+        Chip8Emulator cpu = emulatorWith(0x7001, 0x3003, 0x1200, 0x1206);
+        EmulatorController controller = new EmulatorController(cpu);
+
+        SteppingJob job = SteppingJob.untilPc(0x206, 1_000_000);
+        controller.prepareJob();
+        assertThat(controller.runJob(job, null)).isEqualTo(StopReason.BREAKPOINT);
+
+        assertThat(controller.getEmulator().getProgramCounter()).isEqualTo(0x206);
+        assertThat(job.getExecuted()).isEqualTo(3 * 2 + 2);
+        // The temporary breakpoint is gone again.
+        assertThat(controller.getDebugger().isArmed()).isFalse();
+
+        // Starting at the target runs until it comes round again.
+        Chip8Emulator loop = emulatorWith(0x1200);
+        EmulatorController looping = new EmulatorController(loop);
+        looping.prepareJob();
+        assertThat(looping.runJob(SteppingJob.untilPc(0x200, 10), null)).isEqualTo(StopReason.BREAKPOINT);
+        assertThat(loop.getCycles()).isEqualTo(1);
+    }
+
+    @Test
+    void testStopsAtDisplayChangeAndRepaintsOnce() throws InterruptedException {
+        // 7001: V0 += 1, 3010: skip if V0 == 0x10, 1200: loop, D005: draw, 1208: stay
+        Chip8Emulator cpu = emulatorWith(0x7001, 0x3010, 0x1200, 0xD005, 0x1208);
+        EventBus bus = new EventBus();
+        cpu.setEventBus(bus);
+        AtomicInteger frames = new AtomicInteger();
+        AtomicInteger changes = new AtomicInteger();
+        bus.subscribe(event -> frames.incrementAndGet(), EventType.FRAME_READY);
+        bus.subscribe(event -> changes.incrementAndGet(), EventType.DISPLAY_CHANGED);
+        EmulatorController controller = new EmulatorController(cpu);
+
+        try {
+            SteppingJob job = SteppingJob.untilDisplayChange(1_000_000);
+            controller.prepareJob();
+            assertThat(controller.runJob(job, null)).isEqualTo(StopReason.DISPLAY_CHANGED);
+            assertThat(controller.getEmulator().getProgramCounter()).isEqualTo(0x208);
+            assertThat(bus.awaitIdle(1000)).isTrue();
+            assertThat(frames.get()).isEqualTo(1);
+            assertThat(changes.get()).isEqualTo(0);
+            assertThat(cpu.getEventBus()).isSameInstanceAs(bus);
+        } finally {
+            bus.close();
+        }
+    }
+
+    @Test
+    void testCancelStopsBeforeNextBatch() {
+        Chip8Emulator cpu = emulatorWith(0x1200);
+        EmulatorController controller = new EmulatorController(cpu);
+        SteppingJob job = SteppingJob.cycles(1_000_000);
+
+        controller.prepareJob();
+        controller.runJob(job, executed -> job.cancel());
+
+        assertThat(job.isCancelled()).isTrue();
+        assertThat(job.getExecuted()).isEqualTo(SteppingJob.BATCH_CYCLES);
+    }
+}
@@ -0,0 +1,95 @@
+package emulator;
+
+import controller.EmulatorController;
+import event.EventBus;
+import event.OverflowPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The emulation hot path must not allocate per instruction, otherwise GC pauses end up in the frame budget.
+ * Each test warms up first so the JIT has compiled the loop, then measures the bytes allocated by this thread.
+ */
+class AllocationTest {
+    private static final int CYCLES = 1_000_000;
+    // Slack for the measurement itself, far below one byte per instruction.
+    private static final long TOLERATED_BYTES = 4096;
+
+    private com.sun.management.ThreadMXBean threads;
+    private int inspected;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Loop over draw, BCD, register load/store and ALU instructions, all registers are reset every iteration.
+     */
+    private static Chip8Emulator loopingProgram() {
+        int[] program = {
+                0x6005, // V0 = 5
+                0x610A, // V1 = 10
+                0x6237, // V2 = 0x37
+                0xA300, // I = 0x300
+                0xD015, // draw 5 rows at (V0, V1)
+                0x8014, // V0 += V1
+                0x8126, // V1 >>= 1
+                0xA310, // I = 0x310
+                0xF233, // BCD of V2
+                0xF265, // load V0..V2
+                0x1200, // jump back
+        };
+        return TestRoms.emulatorWith(program);
+    }
+
+    @Test
+    void testExecuteCyclesDoesNotAllocate() {
+        Chip8Emulator cpu = loopingProgram();
+        // Every loop draws, so a display event is published every 11 instructions. Only the publishing
+        // thread is measured, the dispatcher may allocate.
+        try (EventBus events = new EventBus(16, OverflowPolicy.DROP_OLDEST)) {
+            events.subscribe(event -> inspected ^= event.getOpcode() ^ (int) event.getRows()[10]);
+            cpu.setEventBus(events);
+
+            cpu.executeCycles(CYCLES);
+
+            long before = threads.getCurrentThreadAllocatedBytes();
+            cpu.executeCycles(CYCLES);
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+            assertThat(allocated).isAtMost(TOLERATED_BYTES);
+        }
+    }
+
+    @Test
+    void testControllerStepsWithFullHistoryDoNotAllocate() {
+        EmulatorController controller = new EmulatorController(loopingProgram());
+        controller.setHistoryLimit(16);
+        StringBuilder text = new StringBuilder(16);
+
+        for (int i = 0; i < CYCLES / 10; i++) {
+            controller.executeCycle();
+            text.setLength(0);
+            Disassembler.hex(text, controller.getNextOpcode(), 4);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < CYCLES / 10; i++) {
+            controller.executeCycle();
+            text.setLength(0);
+            Disassembler.hex(text, controller.getNextOpcode(), 4);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertThat(allocated).isAtMost(TOLERATED_BYTES);
+    }
+}
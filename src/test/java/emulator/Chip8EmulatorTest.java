@@ -5,6 +5,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -24,8 +25,8 @@ class Chip8EmulatorTest {
             // Memory
             Field memField = cpu.getClass().getDeclaredField("memory");
             memField.setAccessible(true);
-            int[] memory = (int[]) memField.get(cpu);
-            assertThat(memory).hasLength(0x1000);
+            PagedMemory memory = (PagedMemory) memField.get(cpu);
+            assertThat(memory.size()).isEqualTo(0x1000);
 
             // Stack
             Field stackField = cpu.getClass().getDeclaredField("stack");
@@ -52,16 +53,14 @@ class Chip8EmulatorTest {
         cpu.setMemory(memory);
 
         try {
-            Field displayField = cpu.getClass().getDeclaredField("display");
-            displayField.setAccessible(true);
-            short[] display = (short[]) displayField.get(cpu);
-            for(int i = 0; i < display.length; i++) {
-                display[i] = 1;
-            }
+            Field planesField = cpu.getClass().getDeclaredField("planes");
+            planesField.setAccessible(true);
+            long[] planes = (long[]) planesField.get(cpu);
+            Arrays.fill(planes, 0, Chip8Emulator.DISPLAY_HEIGHT, -1L);
 
             cpu.executeCycle();
 
-            for (short b : display) {
+            for (short b : cpu.getDisplay()) {
                 assertThat(b).isEqualTo(0);
             }
             assertPCIs(0x202);
@@ -256,9 +255,7 @@ class Chip8EmulatorTest {
 
             System.out.println(cpu);
 
-            Field displayField = cpu.getClass().getDeclaredField("display");
-            displayField.setAccessible(true);
-            short[] display = (short[]) displayField.get(cpu);
+            short[] display = cpu.getDisplay();
 
             assertThat(display[61 + 30 * 64]).isEqualTo((short) 1);
             assertThat(display[62 + 30 * 64]).isEqualTo((short) 1);
@@ -399,6 +396,279 @@ class Chip8EmulatorTest {
         }
     }
 
+    @Test
+    void testEx9E() {
+        int[] memory = new int[4096];
+        memory[0x200] = 0xE3;
+        memory[0x201] = 0x9E;
+        memory[0x202] = 0xE3;
+        memory[0x203] = 0x9E;
+        cpu.setMemory(memory);
+        setRegister(3, (short) 0xA);
+
+        cpu.executeCycle();
+        assertPCIs(0x202);
+
+        cpu.getKeypad().press(0xA);
+        cpu.executeCycle();
+        assertPCIs(0x206);
+    }
+
+    @Test
+    void testExA1() {
+        int[] memory = new int[4096];
+        memory[0x200] = 0xE3;
+        memory[0x201] = 0xA1;
+        memory[0x202] = 0xE3;
+        memory[0x203] = 0xA1;
+        cpu.setMemory(memory);
+        setRegister(3, (short) 0x5);
+
+        cpu.getKeypad().press(0x5);
+        cpu.executeCycle();
+        assertPCIs(0x202);
+
+        cpu.getKeypad().release(0x5);
+        cpu.executeCycle();
+        assertPCIs(0x206);
+    }
+
+    @Test
+    void testFx0A() {
+        int[] memory = new int[4096];
+        memory[0x200] = 0xF4;
+        memory[0x201] = 0x0A;
+        cpu.setMemory(memory);
+
+        cpu.executeCycle();
+        assertThat(cpu.isWaitingForKey()).isTrue();
+        assertPCIs(0x200);
+
+        cpu.getKeypad().press(0xC);
+        cpu.executeCycle();
+        assertThat(cpu.isWaitingForKey()).isFalse();
+        assertPCIs(0x202);
+        try {
+            Field register = cpu.getClass().getDeclaredField("register");
+            register.setAccessible(true);
+            short[] V = (short[]) register.get(cpu);
+            assertThat(V[4]).isEqualTo(0xC);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testFx0AParksUntilKeyPress() throws InterruptedException {
+        int[] memory = new int[4096];
+        memory[0x200] = 0xF4;
+        memory[0x201] = 0x0A;
+        cpu.setMemory(memory);
+
+        Thread emulation = new Thread(() -> cpu.executeCycles(1));
+        emulation.start();
+        Thread.sleep(50);
+        assertThat(emulation.getState()).isEqualTo(Thread.State.WAITING);
+
+        cpu.getKeypad().press(0x2);
+        emulation.join(1000);
+        assertThat(emulation.isAlive()).isFalse();
+        assertPCIs(0x202);
+    }
+
+    @Test
+    void testRunUntilPCBreakpoint() {
+        int[] memory = new int[4096];
+        // 7001: V0 += 1, 7102: V1 += 2, 1200: jump back
+        memory[0x200] = 0x70;
+        memory[0x201] = 0x01;
+        memory[0x202] = 0x71;
+        memory[0x203] = 0x02;
+        memory[0x204] = 0x12;
+        memory[0x205] = 0x00;
+        cpu.setMemory(memory);
+
+        cpu.getDebugger().addBreakpoint(0x204);
+        assertThat(cpu.runUntilBreakpoint(1000)).isEqualTo(2);
+        assertPCIs(0x204);
+        assertThat(cpu.getDebugger().getLastHit()).isEqualTo(Debugger.HitType.PC);
+
+        // Continuing steps over the current breakpoint and stops on the next loop iteration.
+        assertThat(cpu.runUntilBreakpoint(1000)).isEqualTo(3);
+        assertPCIs(0x204);
+
+        cpu.getDebugger().removeBreakpoint(0x204);
+        assertThat(cpu.getDebugger().isArmed()).isFalse();
+        assertThat(cpu.runUntilBreakpoint(1000)).isEqualTo(1000);
+    }
+
+    @Test
+    void testWriteWatchpointAndRegisterCondition() {
+        int[] memory = new int[4096];
+        // A300: I = 0x300, 7001: V0 += 1, F155: store V0..V1 at I, 1202: jump back
+        memory[0x200] = 0xA3;
+        memory[0x201] = 0x00;
+        memory[0x202] = 0x70;
+        memory[0x203] = 0x01;
+        memory[0x204] = 0xF1;
+        memory[0x205] = 0x55;
+        memory[0x206] = 0x12;
+        memory[0x207] = 0x02;
+        cpu.setMemory(memory);
+
+        cpu.getDebugger().watchWrite(0x301, 1);
+        cpu.runUntilBreakpoint(1000);
+        assertPCIs(0x204);
+        assertThat(cpu.getDebugger().getLastHit()).isEqualTo(Debugger.HitType.MEMORY_WRITE);
+        assertThat(cpu.getDebugger().getLastHitAddress()).isEqualTo(0x301);
+
+        cpu.getDebugger().clear();
+        cpu.getDebugger().addRegisterCondition(0, Debugger.Comparison.EQUAL, 5);
+        cpu.runUntilBreakpoint(1000);
+        assertPCIs(0x204);
+        assertThat(cpu.getDebugger().getLastHit()).isEqualTo(Debugger.HitType.REGISTER);
+    }
+
+    @Test
+    void testForkCreatesItsDebuggerOnFirstUse() {
+        cpu.getDebugger().addBreakpoint(0x202);
+        Chip8Emulator copy = cpu.copy();
+        Chip8Emulator fork = cpu.fork();
+        long withoutDebugger = fork.estimateHeapBytes();
+
+        assertThat(copy.getDebugger()).isSameInstanceAs(cpu.getDebugger());
+        assertThat(copy.getKeypad()).isSameInstanceAs(cpu.getKeypad());
+        assertThat(copy.estimateHeapBytes()).isEqualTo(withoutDebugger);
+        assertThat(fork.getDebugger()).isNotSameInstanceAs(cpu.getDebugger());
+        assertThat(fork.getDebugger().isArmed()).isFalse();
+        assertThat(fork.estimateHeapBytes()).isGreaterThan(withoutDebugger);
+        assertThat(cpu.estimateHeapBytes()).isGreaterThan(withoutDebugger);
+    }
+
+    @Test
+    void testRunStopsBeforeIllegalOpcode() {
+        int[] memory = new int[4096];
+        memory[0x200] = 0x60;
+        memory[0x201] = 0x01;
+        memory[0x202] = 0xB0;
+        memory[0x203] = 0x00;
+        cpu.setMemory(memory);
+
+        assertThat(cpu.run(100)).isEqualTo(StopReason.ILLEGAL_OPCODE);
+        assertPCIs(0x202);
+        assertThat(cpu.getCycles()).isEqualTo(1);
+    }
+
+    @Test
+    void testRunStopsOnKeyWaitAndDisplayChange() {
+        int[] memory = new int[4096];
+        // 00E0: clear, F00A: wait for key
+        memory[0x200] = 0x00;
+        memory[0x201] = 0xE0;
+        memory[0x202] = 0xF0;
+        memory[0x203] = 0x0A;
+        cpu.setMemory(memory);
+
+        assertThat(cpu.run(100, true)).isEqualTo(StopReason.DISPLAY_CHANGED);
+        assertThat(cpu.run(100, true)).isEqualTo(StopReason.WAITING_FOR_KEY);
+        assertPCIs(0x202);
+        assertThat(cpu.run(0)).isEqualTo(StopReason.BUDGET_EXHAUSTED);
+    }
+
+    @Test
+    void testRunFrameCountsTimersDown() {
+        int[] memory = new int[4096];
+        // 6005: V0 = 5, F015: DT = V0, F018: ST = V0, 1206: loop
+        memory[0x200] = 0x60;
+        memory[0x201] = 0x05;
+        memory[0x202] = 0xF0;
+        memory[0x203] = 0x15;
+        memory[0x204] = 0xF0;
+        memory[0x205] = 0x18;
+        memory[0x206] = 0x12;
+        memory[0x207] = 0x06;
+        cpu.setMemory(memory);
+        cpu.setInstructionsPerFrame(10);
+
+        assertThat(cpu.runFrame()).isEqualTo(StopReason.BUDGET_EXHAUSTED);
+        assertThat(cpu.getCycles()).isEqualTo(10);
+        assertThat(cpu.getDelayTimer()).isEqualTo(4);
+        assertThat(cpu.getSoundTimer()).isEqualTo(4);
+
+        for (int i = 0; i < 10; i++) {
+            cpu.runFrame();
+        }
+        assertThat(cpu.getDelayTimer()).isEqualTo(0);
+    }
+
+    @Test
+    void testVipTimingCosts() {
+        TimingModel vip = TimingModel.vip();
+
+        assertThat(vip.cost(0xD125)).isGreaterThan(vip.cost(0xD121));
+        assertThat(vip.cost(0x00E0)).isGreaterThan(vip.getCyclesPerFrame());
+        assertThat(vip.cost(0x6123)).isLessThan(vip.cost(0x8124));
+        assertThat(TimingModel.uniform(12).cost(0xD12F)).isEqualTo(1);
+    }
+
+    @Test
+    void testRunFrameFillsFrameByCost() {
+        int[] memory = new int[4096];
+        // 7001: V0 += 1, 1200: loop
+        memory[0x200] = 0x70;
+        memory[0x201] = 0x01;
+        memory[0x202] = 0x12;
+        memory[0x203] = 0x00;
+        cpu.setMemory(memory);
+        TimingModel vip = TimingModel.vip();
+        cpu.setTimingModel(vip);
+        int pair = vip.cost(0x7001) + vip.cost(0x1200);
+
+        cpu.runFrame();
+        long first = cpu.getCycles();
+        for (int i = 1; i < 60; i++) {
+            cpu.runFrame();
+        }
+
+        // Each frame runs until its budget is used up, the overshoot is taken from the next frame.
+        assertThat(first).isEqualTo(2L * (vip.getCyclesPerFrame() / pair) + 1);
+        long expected = 60L * vip.getCyclesPerFrame() / pair * 2;
+        assertThat(cpu.getCycles()).isAtLeast(expected - 1);
+        assertThat(cpu.getCycles()).isAtMost(expected + 2);
+    }
+
+    @Test
+    void testClearDisplayTakesMoreThanAFrame() {
+        int[] memory = new int[4096];
+        // 00E0: clear, 1200: loop
+        memory[0x200] = 0x00;
+        memory[0x201] = 0xE0;
+        memory[0x202] = 0x12;
+        memory[0x203] = 0x00;
+        cpu.setMemory(memory);
+        cpu.setTimingModel(TimingModel.vip());
+
+        cpu.runFrame();
+        assertThat(cpu.getCycles()).isEqualTo(1);
+        cpu.runFrame();
+        // The clear used up this frame too, only the jump and the next clear fit in.
+        assertThat(cpu.getCycles()).isEqualTo(3);
+    }
+
+    @Test
+    void testPatchRomWritesOnlyChangedBytes() {
+        byte[] previous = {0x60, 0x01, 0x12, 0x00};
+        cpu.loadRom(previous);
+        cpu.executeCycle();
+        // The program overwrote 0x203, which the ROM did not change.
+        setRegister(0, (short) 0x55);
+
+        assertThat(cpu.patchRom(previous, new byte[]{0x60, 0x02, 0x12})).isEqualTo(1);
+        assertThat(cpu.getPCInstruction()).isEqualTo(0x1200);
+        cpu.resetProgramCounter();
+        assertThat(cpu.getPCInstruction()).isEqualTo(0x6002);
+    }
+
     void setRegister(final int index, final short value) {
         try {
             Field register = cpu.getClass().getDeclaredField("register");
@@ -0,0 +1,77 @@
+package emulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Runs every ROM of the catalog for a fixed number of cycles and compares the hash of the final display
+ * with the recorded golden value. Cases are independent and run in parallel.
+ */
+class ConformanceTest {
+    private static final Path CATALOG = Path.of("src/test/resources/conformance/catalog.txt");
+
+    private record Case(Path rom, int cycles, String golden) {
+        @Override
+        public String toString() {
+            return rom + " @" + cycles;
+        }
+    }
+
+    @Test
+    void testGoldenFrames() throws IOException {
+        List<Case> cases = readCatalog();
+        assertThat(cases).isNotEmpty();
+
+        List<String> failures = cases.parallelStream()
+                .map(ConformanceTest::check)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        assertThat(failures).isEmpty();
+    }
+
+    /**
+     * @return a description of the mismatch, null if the case passed.
+     */
+    private static String check(Case c) {
+        if (!Files.exists(c.rom())) {
+            return c + ": ROM not found";
+        }
+        Chip8Emulator cpu = new Chip8Emulator();
+        try {
+            cpu.loadRom(Files.readAllBytes(c.rom()));
+            // run() returns instead of blocking when the ROM waits for a key, which would hang the parallel stream.
+            StopReason reason = cpu.run(c.cycles());
+            if (reason != StopReason.BUDGET_EXHAUSTED) {
+                return c + ": stopped early with " + reason;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            return c + ": " + e;
+        }
+        String actual = String.format("%016x", cpu.displayHash());
+        if (!actual.equals(c.golden())) {
+            return c + ": expected " + c.golden() + " but was " + actual;
+        }
+        return null;
+    }
+
+    private static List<Case> readCatalog() throws IOException {
+        return Files.readAllLines(CATALOG).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(line -> line.split("\\s+"))
+                .map(f -> new Case(Path.of(f[0]), Integer.parseInt(f[1]), f[2]))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,124 @@
+package emulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class DifferentialCheckerTest {
+
+    /**
+     * Behaves like the interpreter, but skips one instruction at a fixed cycle.
+     */
+    private static class FaultyEngine implements Emulator {
+        private final Chip8Emulator delegate;
+        private final long faultCycle;
+        private long cycle;
+
+        FaultyEngine(Chip8Emulator delegate, long faultCycle) {
+            this.delegate = delegate;
+            this.faultCycle = faultCycle;
+        }
+
+        @Override
+        public void executeCycle() {
+            if (cycle++ != faultCycle) {
+                delegate.executeCycle();
+            }
+        }
+
+        @Override
+        public void executeCycles(int n) {
+            for (int i = 0; i < n; i++) {
+                executeCycle();
+            }
+        }
+
+        @Override
+        public StopReason runFrame() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StopReason run(long budget) {
+            executeCycles((int) budget);
+            return StopReason.BUDGET_EXHAUSTED;
+        }
+
+        @Override
+        public long stateHash() {
+            return delegate.stateHash();
+        }
+
+        @Override
+        public Emulator copy() {
+            FaultyEngine copy = new FaultyEngine(delegate.copy(), faultCycle);
+            copy.cycle = cycle;
+            return copy;
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 42, 1234, 0xC0FFEE})
+    void testFuzzedProgramsReportInjectedFault(final long seed) {
+        Chip8Emulator reference = new Chip8Emulator();
+        reference.loadRom(RandomProgramGenerator.generate(seed, 200));
+        long faultCycle = pickFaultCycle(reference.copy(), new Random(seed), 100_000);
+
+        DifferentialChecker checker = new DifferentialChecker(64);
+        DifferentialChecker.Divergence divergence =
+                checker.run(reference, new FaultyEngine(reference.copy(), faultCycle), 100_000);
+
+        assertThat(divergence).isNotNull();
+        assertThat(divergence.getCycle()).isEqualTo(faultCycle + 1);
+    }
+
+    /**
+     * Picks a random cycle the program reaches without faulting whose instruction is not a jump to itself,
+     * since skipping that one would leave the state unchanged.
+     */
+    private static long pickFaultCycle(Chip8Emulator probe, Random random, final long cycles) {
+        long picked = -1;
+        long candidates = 0;
+        try {
+            for (long cycle = 0; cycle < cycles; cycle++) {
+                int instruction = probe.getPCInstruction();
+                if (instruction != (0x1000 | probe.getProgramCounter())
+                        && random.nextLong(++candidates) == 0) {
+                    picked = cycle;
+                }
+                probe.executeCycle();
+            }
+        } catch (RuntimeException e) {
+            // The program ended at an unsupported instruction, skipping that one still diverges.
+        }
+        assertThat(picked).isAtLeast(0L);
+        return picked;
+    }
+
+    @Test
+    void testBisectsToFirstDivergingInstruction() {
+        int[] memory = new int[4096];
+        // 7001: V0 += 1, 7102: V1 += 2, 1200: jump back
+        memory[0x200] = 0x70;
+        memory[0x201] = 0x01;
+        memory[0x202] = 0x71;
+        memory[0x203] = 0x02;
+        memory[0x204] = 0x12;
+        memory[0x205] = 0x00;
+        Chip8Emulator reference = new Chip8Emulator();
+        reference.setMemory(memory);
+
+        DifferentialChecker checker = new DifferentialChecker(256);
+        DifferentialChecker.Divergence divergence = checker.run(reference, new FaultyEngine(reference.copy(), 1000), 5000);
+
+        assertThat(divergence).isNotNull();
+        assertThat(divergence.getCycle()).isEqualTo(1001);
+        // Cycle 1000 (zero based) is the second instruction of the 334th loop iteration.
+        assertThat(divergence.getPC()).isEqualTo(0x202);
+        assertThat(divergence.getInstruction()).isEqualTo("0x7102");
+    }
+}
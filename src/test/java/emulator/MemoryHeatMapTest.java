@@ -0,0 +1,81 @@
+package emulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+
+class MemoryHeatMapTest {
+
+    @Test
+    void testCountsFetchesReadsAndWrites() {
+        // A300: I = 0x300, 607B: V0 = 123, F033: BCD of V0, F265: load V0..V2, D005: draw 5 rows,
+        // A20A: I = 0x20A, F055: store V0 over the already executed A20A, 1200: loop
+        Chip8Emulator cpu = emulatorWith(0xA300, 0x607B, 0xF033, 0xF265, 0xD005, 0xA20A, 0xF055, 0x1200);
+        MemoryHeatMap heatMap = new MemoryHeatMap();
+        cpu.setMemoryHeatMap(heatMap);
+
+        cpu.executeCycles(7);
+
+        assertThat(heatMap.getFetches(0x200)).isEqualTo(1);
+        assertThat(heatMap.getFetches(0x201)).isEqualTo(1);
+        assertThat(heatMap.getFetches(0x20E)).isEqualTo(0);
+        assertThat(heatMap.getWrites(0x300)).isEqualTo(1);
+        assertThat(heatMap.getWrites(0x302)).isEqualTo(1);
+        // Fx65 reads three bytes, Dxyn five.
+        assertThat(heatMap.getReads(0x300)).isEqualTo(2);
+        assertThat(heatMap.getReads(0x304)).isEqualTo(1);
+        assertThat(heatMap.getWrites(0x20A)).isEqualTo(1);
+        assertThat(heatMap.classify(0x2)).isEqualTo(MemoryHeatMap.PageKind.SELF_MODIFIED);
+        assertThat(heatMap.classify(0x3)).isEqualTo(MemoryHeatMap.PageKind.DATA);
+        assertThat(heatMap.classify(0x0)).isEqualTo(MemoryHeatMap.PageKind.UNUSED);
+    }
+
+    @Test
+    void testWrapsAccessesAtTheEndOfMemory() {
+        // AFFE: I = 0xFFE, F255: store V0..V2, which wraps around to 0x000
+        Chip8Emulator cpu = emulatorWith(0xAFFE, 0xF255);
+        MemoryHeatMap heatMap = new MemoryHeatMap();
+        cpu.setMemoryHeatMap(heatMap);
+
+        cpu.executeCycles(2);
+
+        assertThat(heatMap.getWrites(0xFFE)).isEqualTo(1);
+        assertThat(heatMap.getWrites(0xFFF)).isEqualTo(1);
+        assertThat(heatMap.getWrites(0x000)).isEqualTo(1);
+    }
+
+    @Test
+    void testCountsAllFourBytesOfLongLoad() {
+        // F000 0300: I = 0x300, 1204: loop
+        Chip8Emulator cpu = Chip8Emulator.xoChip();
+        cpu.loadRom(new byte[]{(byte) 0xF0, 0x00, 0x03, 0x00, 0x12, 0x04});
+        MemoryHeatMap heatMap = new MemoryHeatMap(cpu.getMemorySize());
+        cpu.setMemoryHeatMap(heatMap);
+
+        cpu.executeCycles(1);
+
+        assertThat(heatMap.getFetches(0x202)).isEqualTo(1);
+        assertThat(heatMap.getFetches(0x203)).isEqualTo(1);
+        assertThat(heatMap.getFetches(0x204)).isEqualTo(0);
+    }
+
+    @Test
+    void testReportListsAccessedPages() throws IOException {
+        Chip8Emulator cpu = emulatorWith(0x1200);
+        MemoryHeatMap heatMap = new MemoryHeatMap();
+        cpu.setMemoryHeatMap(heatMap);
+        cpu.executeCycles(10);
+
+        StringBuilder report = new StringBuilder();
+        heatMap.writeReport(report, 4);
+        StringBuilder csv = new StringBuilder();
+        heatMap.writeCsv(csv);
+
+        assertThat(report.toString()).contains("0x200  CODE");
+        assertThat(report.toString()).doesNotContain("0x300");
+        assertThat(csv.toString()).isEqualTo("address,fetches,reads,writes\n512,10,0,0\n513,10,0,0\n");
+    }
+}
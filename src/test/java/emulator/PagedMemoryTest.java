@@ -0,0 +1,61 @@
+package emulator;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class PagedMemoryTest {
+
+    @Test
+    void testCopiesSharePagesUntilWritten() {
+        PagedMemory memory = new PagedMemory(0x1000);
+        memory.write(0x123, 0xAB);
+        PagedMemory copy = memory.copy();
+        assertThat(copy.read(0x123)).isEqualTo(0xAB);
+        assertThat(memory.isShared(1)).isTrue();
+
+        copy.write(0x124, 0x01);
+
+        assertThat(copy.isShared(1)).isFalse();
+        assertThat(memory.isShared(1)).isFalse();
+        assertThat(memory.isShared(2)).isTrue();
+        assertThat(memory.read(0x124)).isEqualTo(0);
+        assertThat(copy.read(0x123)).isEqualTo(0xAB);
+        assertThat(copy.read(0x124)).isEqualTo(0x01);
+        assertThat(copy.hash(0)).isNotEqualTo(memory.hash(0));
+    }
+
+    @Test
+    void testCopyIntoReplacesAndReleasesPages() {
+        PagedMemory memory = new PagedMemory(0x1000);
+        PagedMemory snapshot = new PagedMemory(0x1000);
+        snapshot.write(0x10, 7);
+
+        memory.copyInto(snapshot);
+        assertThat(snapshot.read(0x10)).isEqualTo(0);
+        assertThat(snapshot.hash(0)).isEqualTo(memory.hash(0));
+
+        // The first write reuses a page the snapshot dropped.
+        memory.write(0x10, 9);
+        assertThat(snapshot.read(0x10)).isEqualTo(0);
+        assertThat(memory.read(0x10)).isEqualTo(9);
+        assertThat(memory.isShared(0)).isFalse();
+    }
+
+    @Test
+    void testForkedEmulatorsShareMemory() {
+        Chip8Emulator cpu = new Chip8Emulator();
+        // 6012: V0 = 0x12, A300: I = 0x300, F055: store V0
+        cpu.loadRom(new byte[]{0x60, 0x12, (byte) 0xA3, 0x00, (byte) 0xF0, 0x55});
+        Chip8Emulator fork = cpu.fork();
+        long shared = cpu.estimateHeapBytes();
+
+        fork.executeCycles(3);
+
+        assertThat(fork.stateHash()).isNotEqualTo(cpu.stateHash());
+        assertThat(shared).isLessThan(new Chip8Emulator().estimateHeapBytes());
+        assertThat(cpu.estimateHeapBytes()).isGreaterThan(shared);
+        cpu.executeCycles(3);
+        assertThat(cpu.stateHash()).isEqualTo(fork.stateHash());
+    }
+}
@@ -0,0 +1,40 @@
+package emulator;
+
+/**
+ * Builds test programs from 16-bit instructions, e.g. {@code emulatorWith(0xA300, 0xD015, 0x1202)}.
+ */
+public final class TestRoms {
+
+    private TestRoms() {
+    }
+
+    /**
+     * @return the instructions as ROM bytes, high byte first.
+     */
+    public static byte[] rom(int... program) {
+        byte[] rom = new byte[program.length * 2];
+        for (int i = 0; i < program.length; i++) {
+            rom[2 * i] = (byte) (program[i] >> 8);
+            rom[2 * i + 1] = (byte) program[i];
+        }
+        return rom;
+    }
+
+    /**
+     * @return a Chip-8 emulator with the program loaded at 0x200.
+     */
+    public static Chip8Emulator emulatorWith(int... program) {
+        Chip8Emulator emulator = new Chip8Emulator();
+        emulator.loadRom(rom(program));
+        return emulator;
+    }
+
+    /**
+     * @return an XO-CHIP emulator with the program loaded at 0x200.
+     */
+    public static Chip8Emulator xoChipWith(int... program) {
+        Chip8Emulator emulator = Chip8Emulator.xoChip();
+        emulator.loadRom(rom(program));
+        return emulator;
+    }
+}
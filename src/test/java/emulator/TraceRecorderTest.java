@@ -0,0 +1,54 @@
+package emulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class TraceRecorderTest {
+
+    @Test
+    void testRingKeepsNewestRecords(@TempDir Path dir) throws IOException {
+        int[] memory = new int[4096];
+        // 7001: V0 += 1, 1200: jump back
+        memory[0x200] = 0x70;
+        memory[0x201] = 0x01;
+        memory[0x202] = 0x12;
+        memory[0x203] = 0x00;
+        Chip8Emulator cpu = new Chip8Emulator();
+        cpu.setMemory(memory);
+
+        Path file = dir.resolve("trace.bin");
+        try (TraceRecorder tracer = new TraceRecorder(file, 4)) {
+            cpu.setTraceRecorder(tracer);
+            cpu.executeCycles(10);
+            assertThat(tracer.getRecordsWritten()).isEqualTo(10);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceDecoder.decode(file, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        String[] lines = bytes.toString(StandardCharsets.UTF_8).split("\\R");
+
+        assertThat(lines).hasLength(4);
+        assertThat(lines[0]).startsWith("6 ");
+        assertThat(lines[0]).contains("ADD V0, 0x01");
+        assertThat(lines[0]).endsWith("V0=0x04");
+        assertThat(lines[3]).startsWith("9 ");
+        assertThat(lines[3]).contains("JP 0x200");
+    }
+
+    @Test
+    void testDisassembler() {
+        assertThat(Disassembler.disassemble(0x00E0)).isEqualTo("CLS");
+        assertThat(Disassembler.disassemble(0xD125)).isEqualTo("DRW V1, V2, 0x5");
+        assertThat(Disassembler.disassemble(0x8AB4)).isEqualTo("ADD VA, VB");
+        assertThat(Disassembler.disassemble(0xF365)).isEqualTo("LD V3, [I]");
+        assertThat(Disassembler.disassemble(0xE0FF)).isEqualTo("DW 0xE0FF");
+    }
+}
@@ -0,0 +1,218 @@
+package emulator;
+
+import controller.EmulatorController;
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.xoChipWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class XoChipTest {
+
+    private static long[] plane(Chip8Emulator emulator, int plane) {
+        long[] rows = new long[Chip8Emulator.DISPLAY_HEIGHT];
+        emulator.packPlane(plane, rows, 0);
+        return rows;
+    }
+
+    @Test
+    void testLongILoadReachesHighMemory() {
+        // F000 ABCD: I = 0xABCD, 6042: V0 = 0x42, F055: store V0, 6000: V0 = 0, F065: load V0
+        Chip8Emulator cpu = xoChipWith(0xF000, 0xABCD, 0x6042, 0xF055, 0x6000, 0xF065);
+        assertThat(cpu.getMemorySize()).isEqualTo(0x10000);
+
+        cpu.executeCycle();
+        assertThat(cpu.getProgramCounter()).isEqualTo(0x204);
+        cpu.executeCycles(4);
+
+        assertThat(cpu.getPCInstruction()).isEqualTo(0x0000);
+        Chip8Emulator classic = new Chip8Emulator();
+        classic.loadRom(new byte[]{(byte) 0xF0, 0x00});
+        assertThat(classic.run(1)).isEqualTo(StopReason.ILLEGAL_OPCODE);
+    }
+
+    @Test
+    void testSkipJumpsOverLongILoad() {
+        // 3000: skip if V0 == 0, F000 1234: skipped as a whole, 6101: V1 = 1
+        Chip8Emulator cpu = xoChipWith(0x3000, 0xF000, 0x1234, 0x6101);
+
+        cpu.executeCycle();
+
+        assertThat(cpu.getProgramCounter()).isEqualTo(0x206);
+    }
+
+    @Test
+    void testRegisterRangeSaveAndLoad() {
+        // 6011, 6122, 6233: V0..V2, A300: I = 0x300, 5022: save V0..V2, 5203: load V2..V0 in reverse
+        Chip8Emulator cpu = xoChipWith(0x6011, 0x6122, 0x6233, 0xA300, 0x5022, 0x5203,
+                // A400: I = 0x400, F255: store V0..V2
+                0xA400, 0xF255);
+        cpu.executeCycles(8);
+        Chip8Emulator expected = xoChipWith(0x6033, 0x6122, 0x6211, 0xA400, 0xF255);
+        expected.executeCycles(5);
+
+        // Saved V0, V1, V2 to 0x300 and loaded them back into V2, V1, V0.
+        assertThat(cpu.getProgramCounter()).isEqualTo(0x210);
+        assertThat(memoryAt(cpu, 0x400, 3)).isEqualTo(memoryAt(expected, 0x400, 3));
+        assertThat(memoryAt(cpu, 0x400, 3)).isEqualTo(0x332211);
+    }
+
+    // Reads bytes through F002, which loads 16 bytes at I into the audio pattern.
+    private static long memoryAt(Chip8Emulator cpu, int address, int length) {
+        Chip8Emulator probe = cpu.copy();
+        byte[] rom = {(byte) 0xF0, 0x00, (byte) (address >> 8), (byte) address, (byte) 0xF0, 0x02};
+        probe.loadRom(rom);
+        probe.resetProgramCounter();
+        probe.executeCycles(2);
+        long[] pattern = new long[2];
+        probe.getAudioPattern(pattern);
+        return pattern[0] >>> (64 - 8 * length);
+    }
+
+    @Test
+    void testDrawsEachSelectedPlaneFromConsecutiveSprites() {
+        // A300: I = 0x300, F301: both planes, D011: draw 1 row at (0, 0), F201: second plane, D011 again
+        Chip8Emulator cpu = xoChipWith(0xA300, 0xF301, 0xD011, 0xF201, 0xD011, 0x0000, 0x0000, 0x0000);
+        cpu.patchRom(new byte[0x102], concat(new byte[0x100], new byte[]{(byte) 0xF0, 0x3C}));
+
+        cpu.executeCycles(3);
+        assertThat(plane(cpu, 0)[0]).isEqualTo(0xF0L << 56);
+        assertThat(plane(cpu, 1)[0]).isEqualTo(0x3CL << 56);
+        assertThat(cpu.getDisplay()[2]).isEqualTo(3);
+
+        // The second plane alone takes the first sprite and collides.
+        cpu.executeCycles(2);
+        assertThat(plane(cpu, 1)[0]).isEqualTo(0xCCL << 56);
+        assertThat(cpu.getDisplay()[2]).isEqualTo(1);
+        long[] union = new long[Chip8Emulator.DISPLAY_HEIGHT];
+        cpu.packDisplay(union);
+        assertThat(union[0]).isEqualTo(0xFCL << 56);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    @Test
+    void testLargeSpriteWrapsAroundEdges() {
+        // 603C: V0 = 60, 611E: V1 = 30, A000: I = font (16 rows of 2 bytes), D010: 16x16 sprite
+        Chip8Emulator cpu = xoChipWith(0x603C, 0x611E, 0xA000, 0xD010);
+        cpu.executeCycles(4);
+
+        // Font bytes 0xF0 0x90 form the first row: pixels 60..63 from 0xF, the rest continues at the left edge.
+        long[] rows = plane(cpu, 0);
+        assertThat(rows[30]).isEqualTo(0xFL | 0x09L << 56);
+        // The rows below the bottom edge continue at the top.
+        assertThat(rows[0]).isNotEqualTo(0L);
+        assertThat(rows[13]).isNotEqualTo(0L);
+        assertThat(rows[14]).isEqualTo(0L);
+    }
+
+    @Test
+    void testScrollsSelectedPlanes() {
+        // A000: I = font "0", D015: draw, F201: second plane only, 00C2: scroll it down 2, F101: first plane,
+        // 00FC: scroll left 4, 00D1: scroll up 1
+        Chip8Emulator cpu = xoChipWith(0xA000, 0xD015, 0xF201, 0x00C2, 0xF101, 0x00FC, 0x00D1);
+        cpu.executeCycles(2);
+        long[] before = plane(cpu, 0);
+
+        cpu.executeCycles(2);
+        assertThat(plane(cpu, 0)).isEqualTo(before);
+
+        cpu.executeCycles(3);
+        long[] after = plane(cpu, 0);
+        assertThat(after[0]).isEqualTo(before[1] << 4);
+        assertThat(after[3]).isEqualTo(before[4] << 4);
+        assertThat(after[4]).isEqualTo(0L);
+        assertThat(after[31]).isEqualTo(0L);
+    }
+
+    @Test
+    void testAudioPatternAndPitch() {
+        // A000: I = font, F002: audio pattern from the first 16 font bytes, 6070: V0 = 112, F03A: pitch
+        Chip8Emulator cpu = xoChipWith(0xA000, 0xF002, 0x6070, 0xF03A);
+        assertThat(cpu.getAudioSampleRate()).isEqualTo(4000.0);
+
+        cpu.executeCycles(4);
+
+        long[] pattern = new long[2];
+        cpu.getAudioPattern(pattern);
+        assertThat(pattern[0]).isEqualTo(0xF0909090F0206020L);
+        assertThat(pattern[1]).isEqualTo(0x2070F010F080F0F0L);
+        assertThat(cpu.getPitch()).isEqualTo(112);
+        assertThat(cpu.getAudioSampleRate()).isEqualTo(8000.0);
+    }
+
+    @Test
+    void testCopiesKeepModeAndState() {
+        Chip8Emulator cpu = xoChipWith(0xF201, 0xA000, 0xD015, 0xF000, 0x8000);
+        EmulatorController controller = new EmulatorController(cpu);
+        controller.executeCycles(4);
+
+        Chip8Emulator fork = cpu.fork();
+        assertThat(fork.isXoChip()).isTrue();
+        assertThat(fork.stateHash()).isEqualTo(cpu.stateHash());
+        controller.undo();
+        assertThat(controller.getEmulator().isXoChip()).isTrue();
+        assertThat(controller.getEmulator().getMemorySize()).isEqualTo(0x10000);
+        assertThat(controller.getEmulator().getProgramCounter()).isEqualTo(0x206);
+    }
+
+    @Test
+    void testRomMayExceedClassicMemory() {
+        Chip8Emulator cpu = Chip8Emulator.xoChip();
+        cpu.loadRom(new byte[0x8000]);
+        assertThrows(IllegalArgumentException.class, () -> new Chip8Emulator().loadRom(new byte[0x8000]));
+    }
+
+    @Test
+    void testBreakpointsCoverWholeMemory() {
+        int[] memory = new int[0x10000];
+        // 1FFE: jump to 0xFFE, 6001: V0 = 1 runs on into 0x1000, 1200: jump back
+        memory[0x200] = 0x1F;
+        memory[0x201] = 0xFE;
+        memory[0xFFE] = 0x60;
+        memory[0xFFF] = 0x01;
+        memory[0x1000] = 0x12;
+        memory[0x1001] = 0x00;
+        Chip8Emulator cpu = Chip8Emulator.xoChip();
+        cpu.setMemory(memory);
+        Debugger debugger = cpu.getDebugger();
+
+        debugger.addBreakpoint(0x1000);
+        assertThat(debugger.hasBreakpoint(0x0000)).isFalse();
+        assertThat(cpu.runUntilBreakpoint(100)).isEqualTo(2);
+        assertThat(cpu.getProgramCounter()).isEqualTo(0x1000);
+        assertThat(debugger.getLastHitAddress()).isEqualTo(0x1000);
+    }
+
+    @Test
+    void testWatchpointsSeeXoChipMemoryAccesses() {
+        // F000 8000: I = 0x8000, F301: both planes, D010: 16x16 sprite per plane, 5012: save V0..V1,
+        // F002: load the audio pattern, 120C: loop
+        Chip8Emulator cpu = xoChipWith(0xF000, 0x8000, 0xF301, 0xD010, 0x5012, 0xF002, 0x120C);
+        Debugger debugger = cpu.getDebugger();
+
+        // The second plane's sprite follows the first one's 32 bytes.
+        debugger.watchRead(0x8030, 1);
+        cpu.runUntilBreakpoint(100);
+        assertThat(cpu.getProgramCounter()).isEqualTo(0x206);
+        assertThat(debugger.getLastHit()).isEqualTo(Debugger.HitType.MEMORY_READ);
+        assertThat(debugger.getLastHitAddress()).isEqualTo(0x8030);
+
+        debugger.clear();
+        debugger.watchWrite(0x8001, 1);
+        cpu.runUntilBreakpoint(100);
+        assertThat(cpu.getProgramCounter()).isEqualTo(0x208);
+        assertThat(debugger.getLastHit()).isEqualTo(Debugger.HitType.MEMORY_WRITE);
+
+        debugger.clear();
+        debugger.watchRead(0x800F, 1);
+        cpu.runUntilBreakpoint(100);
+        assertThat(cpu.getProgramCounter()).isEqualTo(0x20A);
+        assertThat(debugger.getLastHitAddress()).isEqualTo(0x800F);
+    }
+}
@@ -0,0 +1,100 @@
+package environment;
+
+import emulator.StopReason;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.rom;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VectorEnvironmentTest {
+    // C03F: V0 = random & 0x3F, 6100: V1 = 0, A000: I = font "0", D015: draw at (V0, V1), 1208: spin
+    private static final byte[] RANDOM_DIGIT = rom(0xC03F, 0x6100, 0xA000, 0xD015, 0x1208);
+
+    private static long[] observe(Environment environment) {
+        long[] observation = new long[Environment.OBSERVATION_LENGTH];
+        environment.observe(observation, 0);
+        return observation;
+    }
+
+    @Test
+    void testResetWithSameSeedReplaysEpisode() {
+        Environment environment = new Environment(RANDOM_DIGIT, 1);
+        environment.reset(42);
+        environment.step(0);
+        long[] first = observe(environment);
+
+        environment.reset(7);
+        environment.step(0);
+        long[] other = observe(environment);
+        environment.reset(42);
+        environment.step(0);
+
+        assertThat(first[0]).isNotEqualTo(0L);
+        assertThat(other).isNotEqualTo(first);
+        assertThat(observe(environment)).isEqualTo(first);
+    }
+
+    @Test
+    void testActionIsHeldDuringStep() {
+        // F00A: V0 = key, 3003: skip if V0 == 3, 0000: unsupported, 1206: spin
+        Environment environment = new Environment(rom(0xF00A, 0x3003, 0x0000, 0x1206), 2);
+        environment.reset(0);
+
+        assertThat(environment.step(0)).isEqualTo(StopReason.WAITING_FOR_KEY);
+        assertThat(environment.step(1 << 3)).isEqualTo(StopReason.BUDGET_EXHAUSTED);
+        assertThat(environment.isDone()).isFalse();
+
+        environment.reset(0);
+        assertThat(environment.step(1 << 4)).isEqualTo(StopReason.ILLEGAL_OPCODE);
+        assertThat(environment.isDone()).isTrue();
+    }
+
+    @Test
+    void testDoneEnvironmentsAreResetOnNextStep() {
+        // 0000: unsupported, every episode ends after its first step.
+        VectorEnvironment environments = new VectorEnvironment(rom(0x0000), 3, 1);
+        long[] observations = new long[3 * Environment.OBSERVATION_LENGTH];
+        boolean[] done = new boolean[3];
+        environments.reset(1, observations);
+
+        environments.step(new int[3], observations, done);
+        assertThat(done).isEqualTo(new boolean[]{true, true, true});
+        environments.step(new int[3], observations, done);
+        assertThat(done).isEqualTo(new boolean[]{true, true, true});
+        assertThat(environments.get(0).getEmulator().getCycles()).isEqualTo(0L);
+    }
+
+    @Test
+    void testSteppingDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int count = 16;
+        // Episodes end every 4 frames, so resets are measured too. F033 writes the BCD of V0 to 0x300 every
+        // frame, so each episode copies that page again after the reset shared it with the initial state.
+        VectorEnvironment environments = new VectorEnvironment(
+                rom(0xC03F, 0x6100, 0xA000, 0xD015, 0xA300, 0xF033, 0x7101, 0x3104, 0x1204, 0x0000), count, 1);
+        int[] actions = new int[count];
+        long[] observations = new long[count * Environment.OBSERVATION_LENGTH];
+        boolean[] done = new boolean[count];
+        environments.reset(3, observations);
+        for (int i = 0; i < 20_000; i++) {
+            actions[i % count] = i & 0xFFFF;
+            environments.step(actions, observations, done);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 20_000; i++) {
+            actions[i % count] = i & 0xFFFF;
+            environments.step(actions, observations, done);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertThat(allocated).isAtMost(4096L);
+    }
+}
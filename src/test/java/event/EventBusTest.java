@@ -0,0 +1,208 @@
+package event;
+
+import controller.EmulatorController;
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+
+class EventBusTest {
+
+    // Holds the dispatcher in its first delivery until released, so events pile up in the queue.
+    private static final class BlockingListener implements EventListener {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onEvent(EmulatorEvent event) {
+            received.add(event.getType() + " " + event.getX() + "," + event.getY() + " "
+                    + event.getWidth() + "x" + event.getHeight());
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    void testEmulatorPublishesTypedEvents() throws InterruptedException {
+        // A000: I = font "0", 6105: V1 = 5, 6203: V2 = 3, D125: draw at (5, 3), 6302: V3 = 2, F318: ST = V3,
+        // 0000: unsupported
+        Chip8Emulator cpu = emulatorWith(0xA000, 0x6105, 0x6203, 0xD125, 0x6302, 0xF318, 0x0000);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        try (EventBus events = new EventBus(16, OverflowPolicy.BLOCK)) {
+            events.subscribe(event -> {
+                String text = event.getType().toString();
+                if (event.getType() == EventType.DISPLAY_CHANGED) {
+                    text += " " + event.getX() + "," + event.getY() + " " + event.getWidth() + "x" + event.getHeight()
+                            + " " + event.isPixelSet(5, 3);
+                } else if (event.getType() == EventType.HALTED) {
+                    text += " " + event.getStopReason() + " " + Integer.toHexString(event.getProgramCounter());
+                }
+                received.add(text);
+            });
+            cpu.setEventBus(events);
+
+            cpu.runFrame();
+            assertThat(events.awaitIdle(5000)).isTrue();
+        }
+
+        assertThat(received).containsExactly(
+                "DISPLAY_CHANGED 5,3 8x5 true",
+                "SOUND_ON",
+                "HALTED " + StopReason.ILLEGAL_OPCODE + " 20c",
+                "FRAME_READY").inOrder();
+    }
+
+    @Test
+    void testSoundOffWhenTimerRunsOut() throws InterruptedException {
+        // 6301: V3 = 1, F318: ST = V3, 1204: spin
+        Chip8Emulator cpu = emulatorWith(0x6301, 0xF318, 0x1204);
+        List<EventType> received = Collections.synchronizedList(new ArrayList<>());
+        try (EventBus events = new EventBus()) {
+            events.subscribe(event -> received.add(event.getType()), EventType.SOUND_ON, EventType.SOUND_OFF);
+            cpu.setEventBus(events);
+
+            cpu.runFrame();
+            cpu.runFrame();
+            assertThat(events.awaitIdle(5000)).isTrue();
+        }
+
+        assertThat(received).containsExactly(EventType.SOUND_ON, EventType.SOUND_OFF).inOrder();
+    }
+
+    @Test
+    void testUndoPublishesStateRestored() throws InterruptedException {
+        Chip8Emulator cpu = emulatorWith(0x00E0, 0x1202);
+        EmulatorController controller = new EmulatorController(cpu);
+        List<EventType> received = Collections.synchronizedList(new ArrayList<>());
+        try (EventBus events = new EventBus()) {
+            events.subscribe(event -> received.add(event.getType()));
+            cpu.setEventBus(events);
+
+            controller.executeCycle();
+            controller.undo();
+            assertThat(events.awaitIdle(5000)).isTrue();
+        }
+
+        assertThat(received).containsExactly(
+                EventType.DISPLAY_CHANGED, EventType.FRAME_READY, EventType.STATE_RESTORED).inOrder();
+    }
+
+    @Test
+    void testSlowListenerDoesNotBlockPublisherWhenDroppingOldest() throws InterruptedException {
+        Chip8Emulator cpu = new Chip8Emulator();
+        BlockingListener listener = new BlockingListener();
+        try (EventBus events = new EventBus(2, OverflowPolicy.DROP_OLDEST)) {
+            events.subscribe(listener);
+            events.publishSound(cpu, true);
+            assertThat(listener.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            for (int i = 0; i < 10; i++) {
+                events.publishSound(cpu, i % 2 == 0);
+            }
+            listener.release.countDown();
+            assertThat(events.awaitIdle(5000)).isTrue();
+
+            assertThat(events.getDropped()).isEqualTo(8);
+            assertThat(events.getDelivered()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void testCoalescesConsecutiveDisplayChanges() throws InterruptedException {
+        Chip8Emulator cpu = new Chip8Emulator();
+        BlockingListener listener = new BlockingListener();
+        try (EventBus events = new EventBus(4, OverflowPolicy.COALESCE)) {
+            events.subscribe(listener);
+            events.publishSound(cpu, true);
+            assertThat(listener.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            events.publishDisplayChanged(cpu, 10, 4, 8, 5);
+            events.publishDisplayChanged(cpu, 2, 6, 8, 15);
+            events.publishDisplayChanged(cpu, 0, 0, 1, 1);
+            events.publishSound(cpu, false);
+            listener.release.countDown();
+            assertThat(events.awaitIdle(5000)).isTrue();
+
+            assertThat(events.getCoalesced()).isEqualTo(2);
+            assertThat(listener.received).containsExactly(
+                    "SOUND_ON 0,0 64x32",
+                    "DISPLAY_CHANGED 0,0 18x21",
+                    "SOUND_OFF 0,0 64x32").inOrder();
+        }
+    }
+
+    @Test
+    void testCoalescingNeverDropsControlEvents() throws InterruptedException {
+        Chip8Emulator cpu = new Chip8Emulator();
+        BlockingListener listener = new BlockingListener();
+        try (EventBus events = new EventBus(3, OverflowPolicy.COALESCE)) {
+            events.subscribe(listener);
+            events.publishSound(cpu, true);
+            assertThat(listener.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Merged across the sound event and delivered after it.
+            events.publishDisplayChanged(cpu, 0, 0, 1, 1);
+            events.publishSound(cpu, false);
+            events.publishDisplayChanged(cpu, 4, 4, 1, 1);
+            // The full queue drops the display event, then the frame itself, but no control event.
+            events.publishHalted(cpu, StopReason.ILLEGAL_OPCODE);
+            events.publishStateRestored(cpu);
+            events.publishFrameReady(cpu);
+
+            Thread publisher = new Thread(() -> events.publishHalted(cpu, StopReason.BREAKPOINT));
+            publisher.start();
+            publisher.join(200);
+            assertThat(publisher.isAlive()).isTrue();
+
+            listener.release.countDown();
+            publisher.join(5000);
+            assertThat(events.awaitIdle(5000)).isTrue();
+
+            assertThat(events.getCoalesced()).isEqualTo(1);
+            assertThat(events.getDropped()).isEqualTo(2);
+            assertThat(listener.received).containsExactly(
+                    "SOUND_ON 0,0 64x32",
+                    "SOUND_OFF 0,0 64x32",
+                    "HALTED 0,0 64x32",
+                    "STATE_RESTORED 0,0 64x32",
+                    "HALTED 0,0 64x32").inOrder();
+        }
+    }
+
+    @Test
+    void testBlockPolicyWaitsForDispatcher() throws InterruptedException {
+        Chip8Emulator cpu = new Chip8Emulator();
+        BlockingListener listener = new BlockingListener();
+        try (EventBus events = new EventBus(1, OverflowPolicy.BLOCK)) {
+            events.subscribe(listener);
+            events.publishSound(cpu, true);
+            assertThat(listener.entered.await(5, TimeUnit.SECONDS)).isTrue();
+            events.publishSound(cpu, false);
+
+            Thread publisher = new Thread(() -> events.publishSound(cpu, true));
+            publisher.start();
+            publisher.join(200);
+            assertThat(publisher.isAlive()).isTrue();
+
+            listener.release.countDown();
+            publisher.join(5000);
+            assertThat(publisher.isAlive()).isFalse();
+            assertThat(events.awaitIdle(5000)).isTrue();
+            assertThat(events.getDelivered()).isEqualTo(3);
+            assertThat(events.getDropped()).isEqualTo(0);
+        }
+    }
+}
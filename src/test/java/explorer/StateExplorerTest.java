@@ -0,0 +1,63 @@
+package explorer;
+
+import emulator.Chip8Emulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+
+class StateExplorerTest {
+
+    // F00A: V0 = key, 3005: skip if V0 == 5, 1204 / 1206: spin
+    private static final int[] PROGRAM = {0xF00A, 0x3005, 0x1204, 0x1206};
+
+    private static StateExplorer explorer(StateExplorer.Order order, int maxStates) {
+        return new StateExplorer(StateExplorer.singleKeys(), 1, 10, maxStates, order, ForkJoinPool.commonPool());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateExplorer.Order.class)
+    void testFindsEveryDistinctState(StateExplorer.Order order) {
+        Chip8Emulator start = emulatorWith(PROGRAM);
+        StateExplorer.Result result = explorer(order, 1000).explore(start);
+
+        // The start state, the program waiting for a key, and one state per key.
+        assertThat(result.getStates()).isEqualTo(18);
+        assertThat(result.getMaxDepth()).isEqualTo(1);
+        assertThat(result.isTruncated()).isFalse();
+        assertThat(result.getPath()).isNull();
+        assertThat(start.getProgramCounter()).isEqualTo(0x200);
+    }
+
+    @Test
+    void testReturnsPathToGoal() {
+        StateExplorer.Result result = explorer(StateExplorer.Order.BREADTH_FIRST, 1000)
+                .explore(emulatorWith(PROGRAM), emulator -> emulator.getProgramCounter() == 0x206);
+
+        assertThat(result.getPath()).isEqualTo(List.of(1 << 5));
+    }
+
+    @Test
+    void testStopsAtStateLimit() {
+        StateExplorer.Result result = explorer(StateExplorer.Order.DEPTH_FIRST, 5).explore(emulatorWith(PROGRAM));
+
+        assertThat(result.isTruncated()).isTrue();
+        assertThat(result.getStates()).isAtLeast(5);
+    }
+
+    @Test
+    void testStateSetDeduplicates() {
+        StateSet set = new StateSet(4);
+
+        assertThat(set.add(1, 2)).isTrue();
+        assertThat(set.add(1, 2)).isFalse();
+        assertThat(set.add(2, 2)).isTrue();
+        assertThat(set.add(0, 0)).isTrue();
+        assertThat(set.size()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,93 @@
+package host;
+
+import emulator.Chip8Emulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+
+class SessionHostTest {
+
+    // The tests step the host themselves on this clock, there are no carrier threads.
+    private long now;
+    private final SessionHost host = new SessionHost(0, () -> now);
+
+    @AfterEach
+    void tearDown() {
+        host.shutdown();
+    }
+
+    @Test
+    void testSessionsRunAtFrameRate() {
+        for (int i = 0; i < 100; i++) {
+            // 7001: V0 += 1, 1200: jump back
+            host.addSession(emulatorWith(0x7001, 0x1200));
+        }
+        for (int frame = 0; frame < 30; frame++) {
+            now = frame * SessionHost.FRAME_NANOS;
+            assertThat(host.runDue()).isEqualTo(100);
+        }
+
+        for (Session session : host.getSessions()) {
+            assertThat(session.getState()).isEqualTo(Session.State.RUNNING);
+            assertThat(session.getFrames()).isEqualTo(30L);
+            assertThat(session.getLateFrames()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    void testLateSessionSkipsAhead() {
+        Session session = host.addSession(emulatorWith(0x7001, 0x1200));
+        now = 20 * SessionHost.FRAME_NANOS;
+
+        // The late frame, then the frames due at 15 to 20 periods; the ones before are skipped.
+        assertThat(host.runDue()).isEqualTo(7);
+        assertThat(session.getFrames()).isEqualTo(7L);
+    }
+
+    @Test
+    void testSessionWaitingForKeyIsParked() {
+        // F00A: wait for key, 1200: jump back
+        Chip8Emulator emulator = emulatorWith(0xF00A, 0x1200);
+        Session session = host.addSession(emulator);
+        host.runDue();
+
+        assertThat(session.getState()).isEqualTo(Session.State.PARKED);
+        assertThat(session.getFrames()).isEqualTo(1L);
+        now += 10 * SessionHost.FRAME_NANOS;
+        assertThat(host.runDue()).isEqualTo(0);
+
+        emulator.getKeypad().press(0x3);
+        assertThat(host.runDue()).isEqualTo(1);
+        assertThat(session.getFrames()).isEqualTo(2L);
+    }
+
+    @Test
+    void testSessionsSharingKeypadAllWakeUp() {
+        // F00A: wait for key, 1200: jump back
+        Chip8Emulator emulator = emulatorWith(0xF00A, 0x1200);
+        Session first = host.addSession(emulator);
+        Session second = host.addSession(emulator.copy());
+        Session removed = host.addSession(emulator.copy());
+        host.runDue();
+        host.removeSession(removed);
+
+        emulator.getKeypad().press(0x3);
+        assertThat(host.runDue()).isEqualTo(2);
+        assertThat(first.getFrames()).isEqualTo(2L);
+        assertThat(second.getFrames()).isEqualTo(2L);
+        assertThat(removed.getFrames()).isEqualTo(1L);
+    }
+
+    @Test
+    void testIllegalInstructionHaltsSession() {
+        Session session = host.addSession(emulatorWith(0x0123));
+        host.runDue();
+        now += SessionHost.FRAME_NANOS;
+        host.runDue();
+
+        assertThat(session.getState()).isEqualTo(Session.State.HALTED);
+        assertThat(session.getFrames()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,88 @@
+package host;
+
+import emulator.Chip8Emulator;
+import emulator.StopReason;
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+
+class SpeedGovernorTest {
+
+    // Stays busy for the next two checks after every paint, a paint takes three frame periods.
+    private static final class SlowRenderer implements FrameRenderer {
+        private int busyChecks;
+
+        @Override
+        public void render(Chip8Emulator emulator) {
+            busyChecks = 2;
+        }
+
+        @Override
+        public boolean isBusy() {
+            return busyChecks-- > 0;
+        }
+    }
+
+    @Test
+    void testSlowRendererSkipsFramesButNotEmulation() {
+        // 7001: V0 += 1, 1200: loop
+        Chip8Emulator cpu = emulatorWith(0x7001, 0x1200);
+        SpeedGovernor governor = new SpeedGovernor(cpu, 600, new SlowRenderer());
+
+        for (long frame = 0; frame < 30; frame++) {
+            governor.tick(frame * SpeedGovernor.FRAME_NANOS);
+        }
+
+        assertThat(governor.getEmulatedFrames()).isEqualTo(30L);
+        assertThat(cpu.getCycles()).isEqualTo(300L);
+        assertThat(governor.getRenderedFrames()).isEqualTo(10L);
+        assertThat(governor.getSkippedRenderFrames()).isEqualTo(20L);
+        assertThat(governor.getLostFrames()).isEqualTo(0L);
+    }
+
+    @Test
+    void testCatchesUpLateFramesAndDrawsOnlyTheLast() {
+        Chip8Emulator cpu = emulatorWith(0x7001, 0x1200);
+        SpeedGovernor governor = new SpeedGovernor(cpu, 600, null);
+        long frame = SpeedGovernor.FRAME_NANOS;
+
+        governor.tick(0);
+        // Half a frame early, nothing to do yet.
+        assertThat(governor.tick(frame / 2)).isEqualTo(frame - frame / 2);
+        governor.tick(3 * frame);
+        assertThat(governor.getEmulatedFrames()).isEqualTo(4L);
+        assertThat(governor.getSkippedRenderFrames()).isEqualTo(2L);
+
+        // Twenty frames late: five are caught up, the rest is lost.
+        governor.tick(23 * frame);
+        assertThat(governor.getEmulatedFrames()).isEqualTo(9L);
+        assertThat(governor.getLostFrames()).isEqualTo(15L);
+        assertThat(cpu.getCycles()).isEqualTo(90L);
+    }
+
+    @Test
+    void testHaltsAtUnsupportedInstruction() {
+        SpeedGovernor governor = new SpeedGovernor(emulatorWith(0x0000), 600, null);
+
+        governor.tick(0);
+        assertThat(governor.getHaltReason()).isEqualTo(StopReason.ILLEGAL_OPCODE);
+        assertThat(governor.tick(SpeedGovernor.FRAME_NANOS)).isEqualTo(-1L);
+        assertThat(governor.getEmulatedFrames()).isEqualTo(1L);
+    }
+
+    @Test
+    void testFailingTaskDoesNotStopEmulation() {
+        SpeedGovernor governor = new SpeedGovernor(emulatorWith(0x7001, 0x1200), 600, null);
+        boolean[] ran = new boolean[1];
+
+        governor.execute(() -> {
+            throw new IllegalArgumentException("ROM too large");
+        });
+        governor.execute(() -> ran[0] = true);
+        governor.tick(0);
+
+        assertThat(ran[0]).isTrue();
+        assertThat(governor.getEmulatedFrames()).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,80 @@
+package monitor;
+
+import controller.EmulatorController;
+import emulator.Chip8Emulator;
+import event.EventBus;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.RuntimeMBeanException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmulatorMonitorTest {
+
+    @Test
+    void testExposesControllerAndEmulatorState() throws JMException {
+        // 6030: V0 = 0x30, F015: delay timer = V0, 1204: loop
+        Chip8Emulator cpu = emulatorWith(0x6030, 0xF015, 0x1204);
+        EventBus bus = new EventBus();
+        cpu.setEventBus(bus);
+        EmulatorController controller = new EmulatorController(cpu);
+        controller.executeCycles(3);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try (EmulatorMonitor monitor = new EmulatorMonitor(controller, null, Runnable::run)) {
+            ObjectName name = monitor.register("test");
+
+            assertThat(server.getAttribute(name, "Cycles")).isEqualTo(3L);
+            assertThat(server.getAttribute(name, "DelayTimer")).isEqualTo(0x30);
+            assertThat(server.getAttribute(name, "HistoryDepth")).isEqualTo(3);
+            // The snapshots share their memory pages with each other and the running emulator.
+            long historyBytes = (Long) server.getAttribute(name, "HistoryBytes");
+            assertThat(historyBytes).isGreaterThan(0L);
+            assertThat(historyBytes).isLessThan(3 * new Chip8Emulator().estimateHeapBytes());
+            assertThat((Long) server.getAttribute(name, "EventsPublished")).isAtLeast(1L);
+
+            server.invoke(name, "trimHistory", new Object[]{1}, new String[]{int.class.getName()});
+            assertThat(server.getAttribute(name, "HistoryDepth")).isEqualTo(1);
+            assertThat((Long) server.getAttribute(name, "HistoryBytes")).isLessThan(historyBytes);
+            assertThrows(RuntimeMBeanException.class, () -> server.invoke(name, "pause", null, null));
+        } finally {
+            bus.close();
+        }
+        assertThat(server.queryNames(new ObjectName("chip8:*"), null)).isEmpty();
+    }
+
+    @Test
+    void testHistoryBytesAreMeasuredOnControllerThread() {
+        EmulatorController controller = new EmulatorController(emulatorWith(0x7001, 0x1200));
+        controller.executeCycles(2);
+        Queue<Runnable> controllerThread = new ArrayDeque<>();
+
+        try (EmulatorMonitor monitor = new EmulatorMonitor(controller, null, controllerThread::add)) {
+            assertThat(monitor.getHistoryBytes()).isEqualTo(0L);
+            assertThat(monitor.getHistoryBytes()).isEqualTo(0L);
+            // Reads before the controller's thread got to it queue only one measurement.
+            assertThat(controllerThread).hasSize(1);
+
+            controllerThread.poll().run();
+            assertThat(monitor.getHistoryBytes()).isEqualTo(controller.estimateHistoryBytes());
+        }
+    }
+
+    @Test
+    void testRejectsDuplicateName() throws JMException {
+        EmulatorController controller = new EmulatorController(new Chip8Emulator());
+        try (EmulatorMonitor first = new EmulatorMonitor(controller, null, Runnable::run);
+             EmulatorMonitor second = new EmulatorMonitor(controller, null, Runnable::run)) {
+            first.register("twice");
+            assertThrows(IllegalStateException.class, () -> second.register("twice"));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package record;
+
+import emulator.Chip8Emulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static emulator.TestRoms.emulatorWith;
+
+class SessionRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    // A000: I = font "0", D005: draw at (V0, V0), 00E0: clear, 1202: loop. One instruction per frame, so the
+    // display changes every frame except after the jump.
+    private static Chip8Emulator blinking() {
+        Chip8Emulator emulator = emulatorWith(0xA000, 0xD005, 0x00E0, 0x1202);
+        emulator.setInstructionsPerFrame(1);
+        return emulator;
+    }
+
+    @Test
+    void testGifHasOneImagePerChangedFrame() throws IOException {
+        Path gif = directory.resolve("session.gif");
+        Chip8Emulator cpu = blinking();
+        try (SessionRecorder recorder = new SessionRecorder(SessionRecorder.Format.GIF, gif, 2, 16)) {
+            for (int i = 0; i < 7; i++) {
+                cpu.runFrame();
+                recorder.capture(cpu);
+            }
+            assertThat(recorder.getCaptured()).isEqualTo(5);
+            assertThat(recorder.getDuplicates()).isEqualTo(2);
+        }
+
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (ImageInputStream in = ImageIO.createImageInputStream(gif.toFile())) {
+            reader.setInput(in);
+            int images = reader.getNumImages(true);
+            // Frames: blank, drawn, blank, blank (jump), drawn, blank, blank (jump)
+            assertThat(images).isEqualTo(5);
+            BufferedImage image = reader.read(0);
+            assertThat(image.getWidth()).isEqualTo(128);
+            assertThat(image.getHeight()).isEqualTo(64);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void testGifDelaysFollowFrameNumbers() throws IOException {
+        Path gif = directory.resolve("gaps.gif");
+        long[] rows = new long[Chip8Emulator.DISPLAY_HEIGHT];
+        try (SessionRecorder recorder = new SessionRecorder(SessionRecorder.Format.GIF, gif, 1, 16)) {
+            // Frames skipped by the renderer or merged by the event bus leave gaps in the numbers.
+            recorder.capture(rows, 0);
+            rows[0] = 1;
+            recorder.capture(rows, 6);
+            rows[0] = 2;
+            recorder.capture(rows, 30);
+            // Not advancing, shown for one frame.
+            rows[0] = 3;
+            recorder.capture(rows, 30);
+        }
+
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (ImageInputStream in = ImageIO.createImageInputStream(gif.toFile())) {
+            reader.setInput(in);
+            int[] delays = new int[reader.getNumImages(true)];
+            for (int i = 0; i < delays.length; i++) {
+                IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(i)
+                        .getAsTree("javax_imageio_gif_image_1.0");
+                IIOMetadataNode control = (IIOMetadataNode) root.getElementsByTagName("GraphicControlExtension").item(0);
+                delays[i] = Integer.parseInt(control.getAttribute("delayTime"));
+            }
+            // In 1/100 s: frames 0-6, 6-30, 30-31 and 31-32.
+            assertThat(delays).asList().containsExactly(10, 40, 2, 1).inOrder();
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void testPngFramesAreNumberedAndDuplicatesSkipped() throws IOException {
+        Chip8Emulator cpu = blinking();
+        long[] blank = new long[Chip8Emulator.DISPLAY_HEIGHT];
+        try (SessionRecorder recorder = new SessionRecorder(SessionRecorder.Format.PNG, directory, 1, 64)) {
+            recorder.capture(blank, 0);
+            recorder.capture(blank, 1);
+            cpu.runFrame();
+            cpu.runFrame();
+            recorder.capture(cpu);
+
+            assertThat(recorder.getCaptured()).isEqualTo(2);
+            assertThat(recorder.getDuplicates()).isEqualTo(1);
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()).sorted().toArray())
+                    .asList().containsExactly("frame-000000.png", "frame-000002.png").inOrder();
+        }
+        BufferedImage image = ImageIO.read(directory.resolve("frame-000002.png").toFile());
+        // Top left pixel of the "0" glyph is set and drawn black.
+        assertThat(image.getRGB(0, 0) & 0xFFFFFF).isEqualTo(0);
+        assertThat(image.getRGB(63, 31) & 0xFFFFFF).isEqualTo(0xFFFFFF);
+    }
+}
@@ -0,0 +1,119 @@
+package server;
+
+import emulator.Chip8Emulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class FrameStreamServerTest {
+
+    @Test
+    void testCodecRoundTrip() throws Exception {
+        FrameCodec encoder = new FrameCodec();
+        FrameCodec decoder = new FrameCodec();
+        byte[] buffer = new byte[FrameCodec.MAX_ENCODED_SIZE];
+        long[] received = new long[FrameCodec.ROWS];
+
+        long[] frame = new long[FrameCodec.ROWS];
+        for (int i = 0; i < 3; i++) {
+            frame[i * 7] = 0xF0F0_0000_0000_0001L << i;
+            int length = encoder.encode(frame, buffer);
+            decoder.decode(buffer, length, received);
+            assertThat(received).isEqualTo(frame);
+        }
+        // Unchanged frame is all zero after XOR and compresses to almost nothing.
+        assertThat(encoder.encode(frame, buffer)).isLessThan(16);
+    }
+
+    @Test
+    void testStreamOverLoopback() throws Exception {
+        int[] memory = new int[4096];
+        // A300: I = 0x300, 6105: V1 = 5, D115: draw the sprite at (V1, V1)
+        memory[0x200] = 0xA3;
+        memory[0x201] = 0x00;
+        memory[0x202] = 0x61;
+        memory[0x203] = 0x05;
+        memory[0x204] = 0xD1;
+        memory[0x205] = 0x15;
+        memory[0x300] = 0xF0;
+        memory[0x301] = 0x90;
+        memory[0x302] = 0x90;
+        memory[0x303] = 0x90;
+        memory[0x304] = 0xF0;
+        Chip8Emulator cpu = new Chip8Emulator();
+        cpu.setMemory(memory);
+
+        try (FrameStreamServer server = new FrameStreamServer(0);
+             FrameStreamClient client = new FrameStreamClient("localhost", server.getPort())) {
+            cpu.executeCycles(3);
+            server.publishFrame(cpu);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!Arrays.equals(client.getDisplay(), cpu.getDisplay())
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(client.getDisplay()).isEqualTo(cpu.getDisplay());
+            assertThat(client.getDisplay()[5 + 5 * 64]).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testSlowClientSkipsToNewestFrame() throws Exception {
+        Random random = new Random(7);
+        long[] frame = new long[FrameCodec.ROWS];
+        final int frames = 20_000;
+
+        try (FrameStreamServer server = new FrameStreamServer(0);
+             Socket socket = new Socket()) {
+            // A small window makes the server's sender block long before all frames are published.
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("localhost", server.getPort()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            FrameCodec decoder = new FrameCodec();
+            byte[] buffer = new byte[FrameCodec.MAX_ENCODED_SIZE];
+            long[] received = new long[FrameCodec.ROWS];
+            // Every client first gets the current, still empty frame.
+            int length = in.readInt();
+            in.readFully(buffer, 0, length);
+            decoder.decode(buffer, length, received);
+
+            // Random rows do not compress, the client reads nothing meanwhile and publishing must not stall.
+            for (int i = 0; i < frames; i++) {
+                for (int row = 0; row < frame.length; row++) {
+                    frame[row] = random.nextLong();
+                }
+                server.publishFrame(frame);
+            }
+
+            int receivedFrames = 0;
+            while (!Arrays.equals(received, frame)) {
+                length = in.readInt();
+                in.readFully(buffer, 0, length);
+                decoder.decode(buffer, length, received);
+                receivedFrames++;
+            }
+            decoder.close();
+
+            // Every published frame was either sent or counted as dropped for this client.
+            assertThat(server.getDroppedFrames()).isGreaterThan(0L);
+            assertThat(receivedFrames + server.getDroppedFrames()).isEqualTo(frames);
+        }
+    }
+
+    @Test
+    void testParsesListenAddress() {
+        assertThat(FrameStreamServer.parseAddress("5000").getAddress().isLoopbackAddress()).isTrue();
+        assertThat(FrameStreamServer.parseAddress("*:5000").getAddress().isAnyLocalAddress()).isTrue();
+        InetSocketAddress address = FrameStreamServer.parseAddress("127.0.0.2:5001");
+        assertThat(address.getAddress().getHostAddress()).isEqualTo("127.0.0.2");
+        assertThat(address.getPort()).isEqualTo(5001);
+    }
+}
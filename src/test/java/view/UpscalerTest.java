@@ -0,0 +1,99 @@
+package view;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class UpscalerTest {
+    private static final int CLEAR = 0xFFFFFF;
+    private static final int SET = 0x000000;
+
+    private static int at(BufferedImage image, int x, int y) {
+        return image.getRGB(x, y) & 0xFFFFFF;
+    }
+
+    @Test
+    void testNearestKeepsPixels() {
+        Upscaler upscaler = new Upscaler(Upscaler.Filter.NEAREST);
+        long[] rows = new long[32];
+        rows[3] = 1L << 63 | 1L;
+        upscaler.update(rows);
+
+        BufferedImage image = upscaler.getImage();
+        assertThat(image.getWidth()).isEqualTo(64);
+        assertThat(at(image, 0, 3)).isEqualTo(SET);
+        assertThat(at(image, 63, 3)).isEqualTo(SET);
+        assertThat(at(image, 1, 3)).isEqualTo(CLEAR);
+        assertThat(at(image, 0, 4)).isEqualTo(CLEAR);
+    }
+
+    @Test
+    void testScale2xSmoothsDiagonal() {
+        Upscaler upscaler = new Upscaler(Upscaler.Filter.SCALE2X);
+        long[] rows = new long[32];
+        // Pixels (1, 0) and (0, 1), the gap between them is filled at the corner they share.
+        rows[0] = 1L << 62;
+        rows[1] = 1L << 63;
+        upscaler.update(rows);
+
+        BufferedImage image = upscaler.getImage();
+        assertThat(image.getHeight()).isEqualTo(64);
+        assertThat(at(image, 1, 1)).isEqualTo(SET);
+        assertThat(at(image, 2, 2)).isEqualTo(SET);
+        assertThat(at(image, 3, 3)).isEqualTo(CLEAR);
+        assertThat(at(image, 2, 0)).isEqualTo(SET);
+    }
+
+    @Test
+    void testEpxAndScale3xKeepIsolatedPixel() {
+        long[] rows = new long[32];
+        rows[10] = 1L << 53;
+        for (Upscaler.Filter filter : new Upscaler.Filter[]{Upscaler.Filter.EPX, Upscaler.Filter.SCALE3X}) {
+            Upscaler upscaler = new Upscaler(filter);
+            upscaler.update(rows);
+            int factor = filter.getFactor();
+            BufferedImage image = upscaler.getImage();
+            for (int dy = 0; dy < factor; dy++) {
+                for (int dx = 0; dx < factor; dx++) {
+                    assertThat(at(image, 10 * factor + dx, 10 * factor + dy)).isEqualTo(SET);
+                }
+            }
+            assertThat(at(image, 10 * factor - 1, 10 * factor)).isEqualTo(CLEAR);
+        }
+    }
+
+    @Test
+    void testRecomputesOnlyChangedRows() {
+        Upscaler nearest = new Upscaler(Upscaler.Filter.NEAREST);
+        Upscaler scale2x = new Upscaler(Upscaler.Filter.SCALE2X);
+        long[] rows = new long[32];
+        nearest.update(rows);
+        scale2x.update(rows);
+        assertThat(nearest.getLastUpdatedRows()).isEqualTo(32);
+
+        nearest.update(rows);
+        assertThat(nearest.getLastUpdatedRows()).isEqualTo(0);
+
+        rows[5] = -1;
+        nearest.update(rows);
+        scale2x.update(rows);
+        assertThat(nearest.getLastUpdatedRows()).isEqualTo(1);
+        assertThat(scale2x.getLastUpdatedRows()).isEqualTo(3);
+        assertThat(at(scale2x.getImage(), 0, 9)).isEqualTo(CLEAR);
+        assertThat(at(scale2x.getImage(), 0, 10)).isEqualTo(SET);
+    }
+
+    @Test
+    void testViewportLetterboxesWholeMultiples() {
+        Upscaler upscaler = new Upscaler(Upscaler.Filter.SCALE2X);
+
+        // 13 pixels per display pixel would fit, 12 keeps the 2x image evenly scaled.
+        assertThat(upscaler.viewport(860, 600)).isEqualTo(new Rectangle(46, 108, 768, 384));
+        // Smaller than the display itself: fitted exactly.
+        assertThat(upscaler.viewport(32, 100)).isEqualTo(new Rectangle(0, 42, 32, 16));
+        assertThat(upscaler.toView(0, 0, 1, 1, 860, 600)).isEqualTo(new Rectangle(46, 108, 24, 24));
+    }
+}